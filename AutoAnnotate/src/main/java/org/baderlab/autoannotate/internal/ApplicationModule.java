@@ -11,9 +11,11 @@ import org.baderlab.autoannotate.internal.labels.makers.MostSignificantLabelMake
 import org.baderlab.autoannotate.internal.labels.makers.MostSignificantLabelMakerUI;
 import org.baderlab.autoannotate.internal.labels.makers.SizeSortedLabelMakerUI;
 import org.baderlab.autoannotate.internal.layout.CoseLayoutAlgorithmTask;
+import org.baderlab.autoannotate.internal.layout.ForceLayoutTask;
 import org.baderlab.autoannotate.internal.layout.GridLayoutAnnotationSetTaskFactory;
 import org.baderlab.autoannotate.internal.layout.GridLayoutClustersTaskFactory;
 import org.baderlab.autoannotate.internal.model.DebugEventListener;
+import org.baderlab.autoannotate.internal.model.ModelEventBus;
 import org.baderlab.autoannotate.internal.model.ModelManager;
 import org.baderlab.autoannotate.internal.task.CollapseAllTaskFactory;
 import org.baderlab.autoannotate.internal.task.CollapseTask;
@@ -74,8 +76,10 @@ public class ApplicationModule extends AbstractModule {
 		
 		installFactories();
 		
-		// Create a single EventBus
-		bind(EventBus.class).toInstance(new EventBus((e,c) -> e.printStackTrace()));
+		// Create a single EventBus, ModelEventBus replaces Guava's dispatch but keeps the API
+		ModelEventBus eventBus = new ModelEventBus();
+		bind(EventBus.class).toInstance(eventBus);
+		bind(ModelEventBus.class).toInstance(eventBus);
 		
 		// Set up CyProperty
 		PropsReader propsReader = new PropsReader(BuildProperties.APP_ID, "autoannotate.props");
@@ -114,6 +118,7 @@ public class ApplicationModule extends AbstractModule {
 		installFactory(CopyAnnotationsTask.Factory.class);
 		installFactory(CreateAnnotationSetDialog.Factory.class);
 		installFactory(CoseLayoutAlgorithmTask.Factory.class);
+		installFactory(ForceLayoutTask.Factory.class);
 		installFactory(LayoutClustersAction.Factory.class);
 		installFactory(ShowWordcloudDialogAction.Factory.class);
 		installFactory(SizeSortedLabelMakerUI.Factory.class);
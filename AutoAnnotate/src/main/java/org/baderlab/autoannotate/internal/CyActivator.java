@@ -21,9 +21,14 @@ import org.baderlab.autoannotate.internal.labels.LabelMakerFactory;
 import org.baderlab.autoannotate.internal.labels.LabelMakerManager;
 import org.baderlab.autoannotate.internal.layout.CoseLayoutAlgorithm;
 import org.baderlab.autoannotate.internal.model.HighlightClearListener;
+import org.baderlab.autoannotate.internal.model.ModelEventBus;
 import org.baderlab.autoannotate.internal.model.ModelManager;
+import org.baderlab.autoannotate.internal.model.VisibilityTracker;
 import org.baderlab.autoannotate.internal.model.io.ModelTablePersistor;
 import org.baderlab.autoannotate.internal.ui.PanelManager;
+import org.baderlab.autoannotate.internal.ui.render.ClusterThumbnailRenderer;
+import org.baderlab.autoannotate.internal.ui.render.SignificanceLookup;
+import org.baderlab.autoannotate.internal.ui.render.ViewportCuller;
 import org.baderlab.autoannotate.internal.ui.view.WarnDialogModule;
 import org.baderlab.autoannotate.internal.ui.view.action.CreateClusterTaskFactory;
 import org.baderlab.autoannotate.internal.ui.view.action.SelectClusterTaskFactory;
@@ -74,6 +79,17 @@ public class CyActivator extends AbstractCyActivator {
 		var clearListener = injector.getInstance(HighlightClearListener.class);
 		registerAllServices(bc, clearListener);
 		
+		var visibilityTracker = injector.getInstance(VisibilityTracker.class);
+		registerAllServices(bc, visibilityTracker);
+		
+		// SignificanceLookup clears its cache when EnrichmentMap columns change
+		var significanceLookup = injector.getInstance(SignificanceLookup.class);
+		registerAllServices(bc, significanceLookup);
+		
+		// ViewportCuller listens to pan and zoom
+		var viewportCuller = injector.getInstance(ViewportCuller.class);
+		registerAllServices(bc, viewportCuller);
+		
 		// Register menu Actions
 		var panelManager = injector.getInstance(PanelManager.class);
 		registerAppsMenuAction(bc, injector.getInstance(ShowCreateDialogAction.class), ShowCreateDialogAction.TITLE, 1.0f, false);
@@ -148,6 +164,8 @@ public class CyActivator extends AbstractCyActivator {
 			persistor.exportModel();
 			ModelManager modelManager = injector.getInstance(ModelManager.class);
 			modelManager.dispose();
+			injector.getInstance(ModelEventBus.class).shutdown();
+			injector.getInstance(ClusterThumbnailRenderer.class).dispose();
 		} finally {
 			super.shutDown();
 		}
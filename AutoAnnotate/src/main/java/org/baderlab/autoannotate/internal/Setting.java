@@ -5,6 +5,15 @@ public class Setting<T> {
 	// Note: WarnDialog settings are in WarnDialogModule
 	public final static Setting<Boolean> OVERRIDE_GROUP_LABELS = new Setting<Boolean>("overrideGroupLabels", Boolean.class, true);
 	public final static Setting<Boolean> USE_EASY_MODE = new Setting<Boolean>("useEasyMode", Boolean.class, true);
+	// Annotations are only drawn for clusters in the viewport when the annotation set has at least this many clusters, 0 to disable.
+	// Off by default, culled annotations are missing from image export, the network overview and saved sessions.
+	public final static Setting<Integer> CULL_MIN_CLUSTERS = new Setting<Integer>("cullMinClusters", Integer.class, 0);
+	// Labels are not drawn when the network view is zoomed out below this scale factor, 0 to always draw labels
+	public final static Setting<Double> LABEL_MIN_ZOOM = new Setting<Double>("labelMinZoom", Double.class, 0.0);
+	// Render cluster thumbnails with the network view renderer and a copy of the visual style instead of painting them directly
+	public final static Setting<Boolean> THUMBNAIL_HIGH_FIDELITY = new Setting<Boolean>("thumbnailHighFidelity", Boolean.class, false);
+	// Approximate memory budget of the cluster thumbnail cache in megabytes, thumbnails over the budget are only softly referenced
+	public final static Setting<Integer> THUMBNAIL_CACHE_MB = new Setting<Integer>("thumbnailCacheMB", Integer.class, 32);
 		
 	private final String key;
 	private final Class<T> type;
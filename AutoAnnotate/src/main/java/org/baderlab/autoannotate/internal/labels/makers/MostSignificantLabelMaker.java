@@ -36,11 +36,10 @@ public class MostSignificantLabelMaker implements LabelMaker {
 		var sigColumn = options.getSignificanceColumn();
 		var sigOp = options.getSignificance();
 		
-		var sortedNodes = significanceLookup.getNodesSortedBySignificanceColumn(nodes, network, sigOp, sigColumn);
-		if(sortedNodes == null || sortedNodes.isEmpty())
+		var node = significanceLookup.getMostSignificantNodeByColumn(nodes, network, sigOp, sigColumn);
+		if(node == null)
 			return "";
 		
-		var node = sortedNodes.get(0);
 		return network.getRow(node).get(labelColumn, String.class);
 	}
 
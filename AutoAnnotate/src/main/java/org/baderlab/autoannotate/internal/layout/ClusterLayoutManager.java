@@ -21,12 +21,15 @@ public class ClusterLayoutManager {
 	
 	@Inject private Provider<CoseLayoutAlgorithm> coseLayoutProvider;
 	@Inject private Provider<GridLayoutAlgorithm> gridLayoutProvider;
+	@Inject private Provider<ForceLayoutAlgorithm> forceLayoutProvider;
 	@Inject private LayoutClustersAction.Factory layoutClustersActionFactory;
 	
 	public static enum Algorithm {
-		COSE       ("cose",       "Layout Clusters to Minimize Overlap"),
-		COSE_GROUP ("cose_group", "Layout Clusters to Minimize Overlap (Group single nodes together)"),
-		GRID       ("grid",       "Grid Layout");
+		COSE         ("cose",         "Layout Clusters to Minimize Overlap"),
+		COSE_GROUP   ("cose_group",   "Layout Clusters to Minimize Overlap (Group single nodes together)"),
+		COSE_CHANGED ("cose_changed", "Layout Changed Clusters Only"),
+		GRID         ("grid",         "Grid Layout"),
+		FORCE        ("force",        "Fast Force Directed Layout (Large networks)");
 		
 		private final String commandArg;
 		private final String menuName;
@@ -61,10 +64,19 @@ public class ClusterLayoutManager {
 				ctx2.useCatchallCluster = true;
 				action = layoutClustersActionFactory.create(coseLayout, ctx2, as);
 				break;
+			case COSE_CHANGED:
+				CoseLayoutContext ctx3 = coseLayout.createLayoutContext();
+				ctx3.onlyChangedClusters = true;
+				action = layoutClustersActionFactory.create(coseLayout, ctx3, as);
+				break;
 			case GRID:
 				GridLayoutAlgorithm gridLayout = gridLayoutProvider.get();
 				action = layoutClustersActionFactory.create(gridLayout, gridLayout.createLayoutContext(), as);
 				break;
+			case FORCE:
+				ForceLayoutAlgorithm forceLayout = forceLayoutProvider.get();
+				action = layoutClustersActionFactory.create(forceLayout, forceLayout.createLayoutContext(), as);
+				break;
 			default:
 				return null;
 		}
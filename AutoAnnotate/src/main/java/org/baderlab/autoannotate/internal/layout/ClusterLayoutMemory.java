@@ -0,0 +1,37 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.NodeSet;
+
+import com.google.inject.Singleton;
+
+/**
+ * Remembers the nodes each cluster had the last time it was laid out by the CoSE cluster layout,
+ * so that the incremental mode can tell which clusters have changed since.
+ * <br><br>
+ * The arrangement of a cluster and the position of its super-node are not stored separately, they
+ * are the current positions of its nodes, which is where the last layout (or the user) left them.
+ */
+@Singleton
+class ClusterLayoutMemory {
+	
+	// NodeSets are immutable so the cluster's own snapshot can be kept without copying it
+	private final Map<Cluster,NodeSet> laidOut = new WeakHashMap<>();
+	
+	
+	synchronized void remember(Cluster cluster) {
+		laidOut.put(cluster, cluster.getNodes());
+	}
+	
+	/**
+	 * Returns true if the cluster has not been laid out yet or if nodes were added or removed since.
+	 */
+	synchronized boolean isChanged(Cluster cluster) {
+		NodeSet nodes = laidOut.get(cluster);
+		return nodes == null || (nodes != cluster.getNodes() && !nodes.equals(cluster.getNodes()));
+	}
+	
+}
@@ -3,7 +3,9 @@ package org.baderlab.autoannotate.internal.layout;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -44,12 +46,20 @@ import com.google.inject.assistedinject.Assisted;
 
 public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 
+	private static final int MAX_OVERLAP_ITERATIONS = 200;
+	// the incremental mode falls back to the full layout when more than this fraction of the clusters changed
+	private static final double INCREMENTAL_MAX_CHANGED = 0.5;
+	
 	@Inject private ModelManager modelManager;
+	@Inject private ClusterLayoutMemory layoutMemory;
 	
 	@Inject private Provider<AnnotationManager> annotationManagerProvider;
 	@Inject private AnnotationFactory<ShapeAnnotation> shapeFactory;
 	
+	private final Options options;
 	private final boolean useCatchallCluster;
+	private final boolean parallel;
+	private final boolean onlyChangedClusters;
 	
 	
 	public static interface Factory {
@@ -60,23 +70,84 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 	public CoseLayoutAlgorithmTask(@Assisted CyNetworkView netView, @Assisted Set<View<CyNode>> nodes, 
 			@Assisted CoseLayoutContext context, UndoSupport undo) {
 		super(CoseLayoutAlgorithm.DISPLAY_NAME, true, netView, nodes, "", undo);
-		
-		final LayoutOptionsPack.General generalOpt = LayoutOptionsPack.getInstance().getGeneral();
-		generalOpt.layoutQuality = context.layoutQuality.getValue();
-		generalOpt.incremental = context.incremental;
-		
-		final LayoutOptionsPack.CoSE coseOpt = LayoutOptionsPack.getInstance().getCoSE();
-		coseOpt.idealEdgeLength = context.idealEdgeLength;
-		coseOpt.springStrength = context.springStrength;
-		coseOpt.repulsionStrength = context.repulsionStrength;
-		coseOpt.gravityStrength = context.gravityStrength;
-		coseOpt.compoundGravityStrength = context.compoundGravityStrength;
-		coseOpt.gravityRange = context.gravityRange;
-		coseOpt.compoundGravityRange = context.compoundGravityRange;
-		coseOpt.smartEdgeLengthCalc = context.smartEdgeLengthCalc;
-		coseOpt.smartRepulsionRangeCalc = context.smartRepulsionRangeCalc;
-		
+		this.options = new Options(context);
 		this.useCatchallCluster = context.useCatchallCluster;
+		this.parallel = context.parallel;
+		this.onlyChangedClusters = context.onlyChangedClusters;
+	}
+	
+	
+	/**
+	 * Copy of the CoSE options of this task, the context may be changed by the user while the task is running.
+	 */
+	private static class Options {
+		final int layoutQuality;
+		final boolean incremental;
+		final int idealEdgeLength;
+		final int springStrength;
+		final int repulsionStrength;
+		final int gravityStrength;
+		final int compoundGravityStrength;
+		final int gravityRange;
+		final int compoundGravityRange;
+		final boolean smartEdgeLengthCalc;
+		final boolean smartRepulsionRangeCalc;
+		
+		Options(CoseLayoutContext context) {
+			layoutQuality = context.layoutQuality.getValue();
+			incremental = context.incremental;
+			idealEdgeLength = context.idealEdgeLength;
+			springStrength = context.springStrength;
+			repulsionStrength = context.repulsionStrength;
+			gravityStrength = context.gravityStrength;
+			compoundGravityStrength = context.compoundGravityStrength;
+			gravityRange = context.gravityRange;
+			compoundGravityRange = context.compoundGravityRange;
+			smartEdgeLengthCalc = context.smartEdgeLengthCalc;
+			smartRepulsionRangeCalc = context.smartRepulsionRangeCalc;
+		}
+		
+		void applyTo(LayoutOptionsPack pack) {
+			final LayoutOptionsPack.General generalOpt = pack.getGeneral();
+			generalOpt.layoutQuality = layoutQuality;
+			generalOpt.incremental = incremental;
+			
+			final LayoutOptionsPack.CoSE coseOpt = pack.getCoSE();
+			coseOpt.idealEdgeLength = idealEdgeLength;
+			coseOpt.springStrength = springStrength;
+			coseOpt.repulsionStrength = repulsionStrength;
+			coseOpt.gravityStrength = gravityStrength;
+			coseOpt.compoundGravityStrength = compoundGravityStrength;
+			coseOpt.gravityRange = gravityRange;
+			coseOpt.compoundGravityRange = compoundGravityRange;
+			coseOpt.smartEdgeLengthCalc = smartEdgeLengthCalc;
+			coseOpt.smartRepulsionRangeCalc = smartRepulsionRangeCalc;
+		}
+	}
+	
+	
+	/**
+	 * CoSE reads its options from the global LayoutOptionsPack singleton when the layout starts.
+	 * The options of the task are written to the singleton and read back while holding a lock,
+	 * that way layouts with different options can run at the same time.
+	 */
+	private class TaskCoSELayout extends CoSELayout {
+		@Override
+		public void initParameters() {
+			synchronized(LayoutOptionsPack.class) {
+				options.applyTo(LayoutOptionsPack.getInstance());
+				super.initParameters();
+			}
+		}
+	}
+	
+	
+	/**
+	 * Nodes and edges of the partition that are laid out together.
+	 */
+	private static class Component {
+		final List<LayoutNode> nodes = new ArrayList<>();
+		final List<LayoutEdge> edges = new ArrayList<>();
 	}
 	
 	
@@ -95,14 +166,354 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 		if(clusters.isEmpty())
 			return;
 		
+		List<LayoutEdge> edges = new ArrayList<>();
+		partition.edgeIterator().forEachRemaining(edges::add);
+		
+		layoutNodes(partition.getNodeList(), edges, clusters);
+		
+		if(cancelled)
+			return;
+		
+		// Move all Node Views to the new positions
+		for(LayoutNode n : partition.getNodeList()) {
+			partition.moveNodeToLocation(n);
+		}
+	}
+	
+	
+	/**
+	 * Computes the new positions of the LayoutNodes, the node views are not moved.
+	 */
+	void layoutNodes(List<LayoutNode> nodes, List<LayoutEdge> edges, Set<Cluster> clusters) {
 		ClusterMap clusterMap = new ClusterMap(clusters, useCatchallCluster);
 		
-		layoutPhase1(partition, clusterMap);
+		Component all = new Component();
+		all.nodes.addAll(nodes);
+		all.edges.addAll(edges);
+		
+		if(onlyChangedClusters && !isMostlyChanged(all, clusterMap)) {
+			// Not split into components, packing the components would move the clusters that didn't change
+			layoutChangedClusters(all, clusterMap);
+		} else {
+			List<Component> components = parallel ? getComponents(all, clusterMap) : List.of(all);
+			if(components.size() == 1) {
+				layoutComponent(components.get(0), clusterMap);
+			} else {
+				// The components don't share any nodes, edges or clusters so each one can run CoSE on its own thread
+				components.parallelStream().forEach(component -> layoutComponent(component, clusterMap));
+				if(cancelled)
+					return;
+				packComponents(components);
+			}
+		}
+		
+		if(cancelled)
+			return;
+		
+		Set<Cluster> laidOut = new HashSet<>();
+		for(LayoutNode n : nodes) {
+			ClusterKey clusterKey = clusterMap.get(n);
+			if(clusterKey != null && clusterKey.getCluster() != null)
+				laidOut.add(clusterKey.getCluster());
+		}
+		laidOut.forEach(layoutMemory::remember);
+	}
+	
+	
+	private void layoutComponent(Component component, ClusterMap clusterMap) {
+		if(cancelled)
+			return;
+		
+		layoutPhase1(component, clusterMap);
+		
+		if(cancelled)
+			return;
+		
+		layoutPhase2(component, clusterMap);
+	}
+	
+	
+	/**
+	 * Splits the partition into components that are not connected by an edge or by a cluster,
+	 * so that the nodes of a cluster always end up in the same component. Largest components come first.
+	 */
+	private static List<Component> getComponents(Component all, ClusterMap clusterMap) {
+		List<LayoutNode> nodes = all.nodes;
+		Map<CyNode,Integer> indexes = new HashMap<>();
+		int[] parents = new int[nodes.size()];
+		for(int i = 0; i < nodes.size(); i++) {
+			indexes.put(nodes.get(i).getNode(), i);
+			parents[i] = i;
+		}
+		
+		Map<ClusterKey,Integer> clusterNodes = new HashMap<>();
+		for(int i = 0; i < nodes.size(); i++) {
+			ClusterKey clusterKey = clusterMap.get(nodes.get(i));
+			if(clusterKey != null) {
+				Integer j = clusterNodes.putIfAbsent(clusterKey, i);
+				if(j != null)
+					union(parents, i, j);
+			}
+		}
+		
+		List<LayoutEdge> edges = new ArrayList<>();
+		for(LayoutEdge le : all.edges) {
+			Integer source = indexes.get(le.getSource().getNode());
+			Integer target = indexes.get(le.getTarget().getNode());
+			if(source != null && target != null) {
+				union(parents, source, target);
+				edges.add(le);
+			}
+		}
+		
+		Map<Integer,Component> components = new HashMap<>();
+		for(int i = 0; i < nodes.size(); i++) {
+			components.computeIfAbsent(find(parents, i), k -> new Component()).nodes.add(nodes.get(i));
+		}
+		for(LayoutEdge le : edges) {
+			int source = indexes.get(le.getSource().getNode());
+			components.get(find(parents, source)).edges.add(le);
+		}
+		
+		List<Component> list = new ArrayList<>(components.values());
+		list.sort(Comparator.comparingInt((Component c) -> c.nodes.size()).reversed());
+		return list;
+	}
+	
+	private static int find(int[] parents, int i) {
+		while(parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+	
+	private static void union(int[] parents, int i, int j) {
+		parents[find(parents, i)] = find(parents, j);
+	}
+	
+	
+	/**
+	 * Each component was laid out on its own and may overlap the others, arrange them in rows
+	 * starting at the top left corner of the partition, in the order of the list.
+	 */
+	private void packComponents(List<Component> components) {
+		double gap = 2 * options.idealEdgeLength;
+		
+		List<Rectangle2D> bounds = new ArrayList<>(components.size());
+		double xStart = Double.MAX_VALUE, yStart = Double.MAX_VALUE, area = 0;
+		for(Component component : components) {
+			Rectangle2D b = getNodeBounds(component.nodes);
+			bounds.add(b);
+			xStart = Math.min(xStart, b.getX());
+			yStart = Math.min(yStart, b.getY());
+			area += (b.getWidth() + gap) * (b.getHeight() + gap);
+		}
+		
+		double rowWidth = Math.max(Math.sqrt(area), bounds.get(0).getWidth());
+		double x = xStart, y = yStart, rowHeight = 0;
+		
+		for(int i = 0; i < components.size(); i++) {
+			Rectangle2D b = bounds.get(i);
+			if(x > xStart && x + b.getWidth() > xStart + rowWidth) {
+				x = xStart;
+				y += rowHeight + gap;
+				rowHeight = 0;
+			}
+			double dx = x - b.getX();
+			double dy = y - b.getY();
+			for(LayoutNode node : components.get(i).nodes) {
+				node.setX(node.getX() + dx);
+				node.setY(node.getY() + dy);
+			}
+			x += b.getWidth() + gap;
+			rowHeight = Math.max(rowHeight, b.getHeight());
+		}
+	}
+	
+	private static Rectangle2D getNodeBounds(List<LayoutNode> nodes) {
+		double left = Double.MAX_VALUE, top = Double.MAX_VALUE;
+		double right = -Double.MAX_VALUE, bottom = -Double.MAX_VALUE;
+		for(LayoutNode ln : nodes) {
+			left   = Math.min(left,   ln.getX() - ln.getWidth()/2);
+			right  = Math.max(right,  ln.getX() + ln.getWidth()/2);
+			top    = Math.min(top,    ln.getY() - ln.getHeight()/2);
+			bottom = Math.max(bottom, ln.getY() + ln.getHeight()/2);
+		}
+		return new Rectangle2D.Double(left, top, right-left, bottom-top);
+	}
+	
+	
+	/**
+	 * A cluster, or a node that is not in a cluster, as a rectangle in the incremental mode.
+	 */
+	private static class SuperNode {
+		final List<LayoutNode> nodes;
+		final boolean pinned;
+		double x, y, width, height;
+		double dx, dy;
+		
+		SuperNode(List<LayoutNode> nodes, boolean pinned, Rectangle2D bounds) {
+			this.nodes = nodes;
+			this.pinned = pinned;
+			this.x = bounds.getX();
+			this.y = bounds.getY();
+			this.width = bounds.getWidth();
+			this.height = bounds.getHeight();
+		}
+		
+		void move(double mx, double my) {
+			x += mx;
+			y += my;
+			dx += mx;
+			dy += my;
+		}
+	}
+	
+	
+	/**
+	 * Returns true if so many clusters changed since they were last laid out (eg. after a session was loaded,
+	 * or the first time the layout is run) that the incremental mode would only push apart clusters that
+	 * are all in the wrong place, the full layout is used instead. Evaluated over the whole partition, 
+	 * a changed cluster that is not connected to anything would count as a fully changed component.
+	 */
+	private boolean isMostlyChanged(Component component, ClusterMap clusterMap) {
+		Set<Cluster> clusters = new HashSet<>();
+		for(LayoutNode n : component.nodes) {
+			ClusterKey clusterKey = clusterMap.get(n);
+			if(clusterKey != null && clusterKey.getCluster() != null)
+				clusters.add(clusterKey.getCluster());
+		}
+		long changed = clusters.stream().filter(layoutMemory::isChanged).count();
+		return changed > clusters.size() * INCREMENTAL_MAX_CHANGED;
+	}
+	
+	
+	/**
+	 * Incremental mode:
+	 * Only the clusters whose nodes changed since they were last laid out are laid out internally with phase 1,
+	 * each one is then centered where its nodes were before. Phase 2 runs on the super-nodes of the partition
+	 * with the unchanged clusters and the unclustered nodes pinned. CoSE can't pin nodes, so instead of CoSE the 
+	 * changed super-nodes are pushed away from anything they overlap, which keeps them close to where they were.
+	 */
+	private void layoutChangedClusters(Component component, ClusterMap clusterMap) {
+		Map<ClusterKey,List<LayoutNode>> nodesInCluster = new HashMap<>();
+		List<SuperNode> superNodes = new ArrayList<>();
+		
+		for(LayoutNode n : component.nodes) {
+			ClusterKey clusterKey = clusterMap.get(n);
+			if(clusterKey != null) {
+				nodesInCluster.computeIfAbsent(clusterKey, k -> new ArrayList<>()).add(n);
+			} else {
+				superNodes.add(new SuperNode(List.of(n), true, getNodeBounds(List.of(n))));
+			}
+		}
+		
+		Component changed = new Component();
+		Map<ClusterKey,Rectangle2D[]> changedBounds = new HashMap<>(); // bounds with labels and bounds of the nodes, before the layout
+		
+		for(var entry : nodesInCluster.entrySet()) {
+			Cluster cluster = entry.getKey().getCluster();
+			List<LayoutNode> nodes = entry.getValue();
+			if(cluster != null && layoutMemory.isChanged(cluster)) {
+				changed.nodes.addAll(nodes);
+				changedBounds.put(entry.getKey(), new Rectangle2D[] { getClusterBounds(cluster, nodes), getNodeBounds(nodes) });
+			} else {
+				Rectangle2D bounds = cluster == null ? getNodeBounds(nodes) : getClusterBounds(cluster, nodes);
+				superNodes.add(new SuperNode(nodes, true, bounds));
+			}
+		}
+		
+		if(changed.nodes.isEmpty())
+			return;
+		
+		for(LayoutEdge le : component.edges) {
+			ClusterKey sourceCluster = clusterMap.get(le.getSource().getNode());
+			ClusterKey targetCluster = clusterMap.get(le.getTarget().getNode());
+			if(changedBounds.containsKey(sourceCluster) && changedBounds.containsKey(targetCluster)) {
+				changed.edges.add(le);
+			}
+		}
+		
+		layoutPhase1(changed, clusterMap);
 		
 		if(cancelled)
 			return;
 		
-		layoutPhase2(partition, clusterMap);
+		for(var entry : changedBounds.entrySet()) {
+			List<LayoutNode> nodes = nodesInCluster.get(entry.getKey());
+			Rectangle2D before = entry.getValue()[0];
+			Rectangle2D beforeNodes = entry.getValue()[1];
+			Rectangle2D after = getNodeBounds(nodes);
+			
+			// keep the room that was left for the label around the nodes
+			double left = beforeNodes.getX() - before.getX();
+			double top = beforeNodes.getY() - before.getY();
+			double width = after.getWidth() + before.getWidth() - beforeNodes.getWidth();
+			double height = after.getHeight() + before.getHeight() - beforeNodes.getHeight();
+			double x = before.getCenterX() - width/2;
+			double y = before.getCenterY() - height/2;
+			
+			double dx = x + left - after.getX();
+			double dy = y + top - after.getY();
+			for(LayoutNode node : nodes) {
+				node.setX(node.getX() + dx);
+				node.setY(node.getY() + dy);
+			}
+			superNodes.add(new SuperNode(nodes, false, new Rectangle2D.Double(x, y, width, height)));
+		}
+		
+		removeOverlaps(superNodes);
+		
+		for(SuperNode superNode : superNodes) {
+			if(!superNode.pinned) {
+				for(LayoutNode node : superNode.nodes) {
+					node.setX(node.getX() + superNode.dx);
+					node.setY(node.getY() + superNode.dy);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * Pushes the super-nodes that are not pinned out of the way of the others, along the axis with the smallest overlap.
+	 */
+	private void removeOverlaps(List<SuperNode> superNodes) {
+		final double gap = 10;
+		
+		for(int iter = 0; iter < MAX_OVERLAP_ITERATIONS && !cancelled; iter++) {
+			boolean moved = false;
+			for(SuperNode a : superNodes) {
+				if(a.pinned)
+					continue;
+				for(SuperNode b : superNodes) {
+					if(a == b)
+						continue;
+					
+					double overlapX = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x) + gap;
+					double overlapY = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y) + gap;
+					if(overlapX <= 0 || overlapY <= 0)
+						continue;
+					
+					double signX = (a.x + a.width/2) < (b.x + b.width/2) ? -1 : 1;
+					double signY = (a.y + a.height/2) < (b.y + b.height/2) ? -1 : 1;
+					double share = b.pinned ? 1.0 : 0.5;
+					if(overlapX < overlapY) {
+						a.move(signX * overlapX * share, 0);
+						if(!b.pinned)
+							b.move(-signX * overlapX * share, 0);
+					} else {
+						a.move(0, signY * overlapY * share);
+						if(!b.pinned)
+							b.move(0, -signY * overlapY * share);
+					}
+					moved = true;
+				}
+			}
+			if(!moved)
+				break;
+		}
 	}
 	
 	
@@ -115,8 +526,8 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 	 * all the unclustered nodes to process them as well, and the layout may run in partitioned mode. 
 	 * So I have to use partition.getNodeList() as the starting point.
 	 */
-	private void layoutPhase1(LayoutPartition partition, ClusterMap clusterMap) {
-		CoSELayout layout = new CoSELayout();
+	private void layoutPhase1(Component component, ClusterMap clusterMap) {
+		CoSELayout layout = new TaskCoSELayout();
 		LGraphManager graphManager = layout.getGraphManager();
 		LGraph root = graphManager.addRoot();
 		
@@ -124,7 +535,7 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 		Map<CyNode, LNode> nodeToNode = new HashMap<>();
 		Map<LNode, LNode> nodeToParentNode = new HashMap<>();
 		
-		for(LayoutNode n : partition.getNodeList()) {
+		for(LayoutNode n : component.nodes) {
 			ClusterKey clusterKey = clusterMap.get(n);
 			if(clusterKey != null) {
 				Pair<LNode,LGraph> pair = clusterToGraph.get(clusterKey);
@@ -150,7 +561,7 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 		}
 		
 		// Create all CoSE edges
-		Iterator<LayoutEdge> edgeIter = partition.edgeIterator();
+		Iterator<LayoutEdge> edgeIter = component.edges.iterator();
 		while(edgeIter.hasNext() && !cancelled) {
 			LayoutEdge le = edgeIter.next();
 			
@@ -171,7 +582,7 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 			}
 		}
 		
-		runLayout(layout, partition);
+		runLayout(layout);
 	}
 	
 	
@@ -179,8 +590,8 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 	 * Phase 2:
 	 * Make CoSE think that each cluster is a single node, set size of nodes so that they make room for labels.
 	 */
-	private void layoutPhase2(LayoutPartition partition, ClusterMap clusterMap) {
-		CoSELayout layout = new CoSELayout();
+	private void layoutPhase2(Component component, ClusterMap clusterMap) {
+		CoSELayout layout = new TaskCoSELayout();
 		LGraphManager graphManager = layout.getGraphManager();
 		LGraph root = graphManager.addRoot();
 
@@ -189,7 +600,7 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 		
 		Map<CyNode,LNode> nodeToNode = new HashMap<>();
 		
-		for(LayoutNode n : partition.getNodeList()) {
+		for(LayoutNode n : component.nodes) {
 			ClusterKey clusterKey = clusterMap.get(n);
 			if(clusterKey != null) {
 				nodesInCluster.computeIfAbsent(clusterKey, k -> new ArrayList<>()).add(n);
@@ -210,7 +621,7 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 		}
 		
 		
-		Iterator<LayoutEdge> edgeIter = partition.edgeIterator();
+		Iterator<LayoutEdge> edgeIter = component.edges.iterator();
 		while(edgeIter.hasNext() && !cancelled) {
 			LayoutEdge le = edgeIter.next();
 			
@@ -235,28 +646,20 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 			}
 		}
 		
-		runLayout(layout, partition);
+		runLayout(layout);
 	}
 	
 	
-	private void runLayout(CoSELayout layout, LayoutPartition partition) {
+	private void runLayout(CoSELayout layout) {
 		if(cancelled)
 			return;
 		
-		// Run the layout
+		// Run the layout, the new positions are written to the LayoutNodes
 		try {
 			layout.runLayout();
 		} catch (Exception e) {
 			e.printStackTrace();
-			return;
 		}
-		
-		if(cancelled)
-			return;
-		
-		// Move all Node Views to the new positions
-		for(LayoutNode n : partition.getNodeList())
-			partition.moveNodeToLocation(n);
 	}
 	
 	
@@ -305,15 +708,15 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 	}
 	
 	private LNode createClusterLNode(Cluster cluster, List<LayoutNode> nodes, LGraph graph, CoSELayout layout) {
-		ClusterVNode vn = new ClusterVNode(nodes);
-		LNode ln = graph.add(layout.newNode(vn));
-		
+		// The node views have not been moved yet, so the bounds must come from the positions computed by phase 1
 		Rectangle2D bounds;
 		if(cluster == null)
 			bounds = getClusterBounds(nodes);
 		else 
-			bounds = getClusterBounds(cluster);
+			bounds = getClusterBounds(cluster, nodes);
 		
+		ClusterVNode vn = new ClusterVNode(nodes, bounds.getX(), bounds.getY());
+		LNode ln = graph.add(layout.newNode(vn));
 		ln.setLocation(bounds.getX(), bounds.getY());
 		ln.setWidth(bounds.getWidth());
 		ln.setHeight(bounds.getHeight());
@@ -322,9 +725,32 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 	
 	
 	private static Rectangle2D getClusterBounds(Cluster cluster) {
+		return getClusterBounds(cluster, ArgsShape.createFor(cluster, false, null, null));
+	}
+	
+	/**
+	 * Returns the bounds the annotations of the cluster would have with the nodes at the positions of the LayoutNodes.
+	 */
+	private static Rectangle2D getClusterBounds(Cluster cluster, List<LayoutNode> nodes) {
+		int n = nodes.size();
+		CyNode[] ns = new CyNode[n];
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		double[] rs = new double[n];
+		for(int i = 0; i < n; i++) {
+			LayoutNode ln = nodes.get(i);
+			ns[i] = ln.getNode();
+			xs[i] = ln.getX();
+			ys[i] = ln.getY();
+			rs[i] = ln.getWidth();
+		}
+		CoordinateData coordinateData = CoordinateData.forPositions(ns, xs, ys, rs);
+		return getClusterBounds(cluster, ArgsShape.createFor(cluster, coordinateData, false, null, null));
+	}
+	
+	private static Rectangle2D getClusterBounds(Cluster cluster, ArgsShape shape) {
 		// For real clusters use the size of the annotations when computing the bounds
 		// This ensures that labels and shapes don't overlap.
-		ArgsShape shape = ArgsShape.createFor(cluster, false, null, null);
 		List<ArgsLabel> lables = ArgsLabel.createFor(shape, cluster, false, null);
 		
 		double x = shape.x, y = shape.y, w = shape.width, h = shape.height;
@@ -388,20 +814,13 @@ public class CoseLayoutAlgorithmTask extends AbstractPartitionLayoutTask {
 		private final List<LayoutNode> nodes;
 		private double x, y;
 		
-		ClusterVNode(List<LayoutNode> nodes) {
+		/**
+		 * The left and top must be the initial location of the LNode, so that the nodes are only moved by as much as CoSE moves the LNode.
+		 */
+		ClusterVNode(List<LayoutNode> nodes, double left, double top) {
 			this.nodes = nodes;
-			
-			Iterator<LayoutNode> iter = nodes.iterator();
-			if(iter.hasNext()) {
-				LayoutNode ln = iter.next();
-				x = ln.getX();
-				y = ln.getY();
-			}
-			while(iter.hasNext()) {
-				LayoutNode ln = iter.next();
-				x = Math.min(x, ln.getX());
-				y = Math.min(y, ln.getY());
-			}
+			this.x = left;
+			this.y = top;
 		}
 		
 		@Override
@@ -73,6 +73,12 @@ public class CoseLayoutContext implements TunableValidator {
 	@Tunable(description = "Experimental: tree all non-clustered nodes as being in a catch-all cluster", gravity = 3.2, context="both", exampleStringValue="true")
 	public boolean useCatchallCluster = false;
 	
+	@Tunable(description = "Lay out disconnected components in parallel", gravity = 3.3, context="both", longDescription="Lay out groups of clusters that are not connected to each other on separate threads and arrange them in rows, not used when only changed clusters are laid out; boolean values only, ```true``` or ```false```; defaults to ```true```", exampleStringValue="true")
+	public boolean parallel = true;
+	
+	@Tunable(description = "Only lay out clusters that changed since the last layout", gravity = 3.4, context="both", longDescription="Only lay out clusters that were added or whose nodes changed since the last time the layout was run, the other clusters are not moved. If most of the clusters changed the full layout is run instead; boolean values only, ```true``` or ```false```; defaults to ```false```", exampleStringValue="false")
+	public boolean onlyChangedClusters = false;
+	
 	@Override
 	public ValidationState getValidationState(final Appendable errMsg) {
 		return ValidationState.OK;
@@ -85,7 +91,7 @@ public class CoseLayoutContext implements TunableValidator {
 				+ repulsionStrength + ", gravityStrength=" + gravityStrength + ", compoundGravityStrength="
 				+ compoundGravityStrength + ", gravityRange=" + gravityRange + ", compoundGravityRange="
 				+ compoundGravityRange + ", smartEdgeLengthCalc=" + smartEdgeLengthCalc + ", smartRepulsionRangeCalc="
-				+ smartRepulsionRangeCalc + ", useCatchallCluster=" + useCatchallCluster + "]";
+				+ smartRepulsionRangeCalc + ", useCatchallCluster=" + useCatchallCluster + ", parallel=" + parallel + ", onlyChangedClusters=" + onlyChangedClusters + "]";
 	}
 
 }
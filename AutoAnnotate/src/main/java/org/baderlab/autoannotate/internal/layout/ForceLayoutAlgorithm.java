@@ -0,0 +1,35 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import org.baderlab.autoannotate.internal.model.AnnotationSet;
+import org.cytoscape.work.TaskIterator;
+
+import com.google.inject.Inject;
+
+public class ForceLayoutAlgorithm implements ClusterLayoutAlgorithm<ForceLayoutContext> {
+	
+	public static final String DISPLAY_NAME = "AutoAnnotate: Cluster Force Layout";
+	public static final String ID = "autoannotate-force-layout";
+	
+	@Inject private ForceLayoutTask.Factory taskFactory;
+	
+	
+	@Override
+	public TaskIterator createTaskIterator(AnnotationSet annotationSet, ForceLayoutContext context) {
+		return new TaskIterator(taskFactory.create(annotationSet, context));
+	}
+	
+	@Override
+	public ForceLayoutContext createLayoutContext() {
+		return new ForceLayoutContext();
+	}
+	
+	@Override
+	public String getID() {
+		return ID;
+	}
+	
+	@Override
+	public String getDisplayName() {
+		return DISPLAY_NAME;
+	}
+}
@@ -0,0 +1,49 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import java.io.IOException;
+
+import org.cytoscape.work.Tunable;
+import org.cytoscape.work.TunableValidator;
+
+public class ForceLayoutContext implements TunableValidator {
+	
+	@Tunable(description = "Number of iterations:", gravity = 1.0, context="both", longDescription="Number of iterations, any positive integer", exampleStringValue="200")
+	public int iterations = 200;
+	
+	@Tunable(description = "Ideal edge length:", tooltip = "Any positive integer", gravity = 2.0, context="both", longDescription="Ideal edge length, any positive integer", exampleStringValue="50")
+	public int idealEdgeLength = 50;
+	@Tunable(description = "Cluster gravity (0-100):", gravity = 2.1, context="both", longDescription="How strongly the nodes of a cluster are pulled towards the center of the cluster (0-100)", exampleStringValue="50")
+	public int clusterGravity = 50;
+	@Tunable(description = "Inter-cluster edge strength (0-100):", gravity = 2.2, context="both", longDescription="Strength of edges between different clusters relative to edges inside a cluster (0-100)", exampleStringValue="20")
+	public int interClusterEdgeStrength = 20;
+	
+	@Tunable(description = "Barnes-Hut theta (0.1-1.0):", gravity = 3.0, context="both", longDescription="Accuracy of the repulsion approximation, smaller is more accurate and slower (0.1-1.0)", exampleStringValue="0.8")
+	public double theta = 0.8;
+	
+	@Override
+	public ValidationState getValidationState(final Appendable errMsg) {
+		try {
+			if(iterations <= 0 || idealEdgeLength <= 0) {
+				errMsg.append("Iterations and ideal edge length must be positive.");
+				return ValidationState.INVALID;
+			}
+			if(clusterGravity < 0 || clusterGravity > 100 || interClusterEdgeStrength < 0 || interClusterEdgeStrength > 100) {
+				errMsg.append("Cluster gravity and inter-cluster edge strength must be between 0 and 100.");
+				return ValidationState.INVALID;
+			}
+			if(theta < 0.1 || theta > 1.0) {
+				errMsg.append("Theta must be between 0.1 and 1.0.");
+				return ValidationState.INVALID;
+			}
+		} catch(IOException e) { }
+		return ValidationState.OK;
+	}
+	
+	@Override
+	public String toString() {
+		return "ForceLayoutContext [iterations=" + iterations + ", idealEdgeLength=" + idealEdgeLength
+				+ ", clusterGravity=" + clusterGravity + ", interClusterEdgeStrength=" + interClusterEdgeStrength
+				+ ", theta=" + theta + "]";
+	}
+	
+}
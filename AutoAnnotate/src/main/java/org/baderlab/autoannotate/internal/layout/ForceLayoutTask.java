@@ -0,0 +1,274 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_X_LOCATION;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_Y_LOCATION;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.baderlab.autoannotate.internal.BuildProperties;
+import org.baderlab.autoannotate.internal.model.AnnotationSet;
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.LayoutEdit;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.TaskMonitor;
+import org.cytoscape.work.undo.UndoSupport;
+
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+
+/**
+ * Force directed layout that keeps clusters together, meant for networks that are too large for the CoSE cluster layout.
+ * <br><br>
+ * The node positions are kept in primitive arrays and the edges in CSR (compressed sparse row) adjacency arrays.
+ * Repulsion between all pairs of nodes is approximated with a Barnes-Hut {@link QuadTree}, springs pull
+ * connected nodes together, edges between clusters are weaker than edges inside a cluster, and every clustered
+ * node is pulled towards the center of its cluster. Forces are accumulated on the fork/join common pool.
+ */
+public class ForceLayoutTask extends AbstractTask {
+	
+	private static final int PARALLEL_MIN_NODES = 1000;
+	private static final int CHUNK_SIZE = 256;
+	private static final double CLUSTER_GRAVITY_SCALE = 0.2;
+	private static final double GLOBAL_GRAVITY = 0.01;
+	
+	@Inject private UndoSupport undoSupport;
+	
+	private final AnnotationSet annotationSet;
+	private final ForceLayoutContext context;
+	
+	// node positions and cluster assignments, indexed 0..n-1
+	private int n;
+	private CyNode[] nodes;
+	private double[] x, y;
+	private double[] fx, fy;
+	private double centerX, centerY;
+	private int[] cluster; // -1 for nodes that are not in a cluster
+	private double[] clusterX, clusterY;
+	private int[] clusterSize;
+	
+	// CSR adjacency, the neighbours of node i are targets[offsets[i]] to targets[offsets[i+1]-1], every edge is stored in both directions
+	private int[] offsets;
+	private int[] targets;
+	
+	
+	public static interface Factory {
+		ForceLayoutTask create(AnnotationSet annotationSet, ForceLayoutContext context);
+	}
+	
+	@Inject
+	public ForceLayoutTask(@Assisted AnnotationSet annotationSet, @Assisted ForceLayoutContext context) {
+		this.annotationSet = annotationSet;
+		this.context = context;
+	}
+	
+	
+	@Override
+	public void run(TaskMonitor taskMonitor) {
+		taskMonitor.setTitle(BuildProperties.APP_NAME);
+		taskMonitor.setStatusMessage("Cluster Force Layout: " + annotationSet.getName());
+		
+		CyNetworkView netView = annotationSet.getParent().getNetworkView();
+		load();
+		if(n < 2)
+			return;
+		
+		final int iterations = context.iterations;
+		final double k = context.idealEdgeLength;
+		double temperature = Math.max(k, k * Math.sqrt(n) / 10);
+		final double cooling = temperature / iterations;
+		
+		QuadTree tree = new QuadTree(n);
+		for(int iter = 0; iter < iterations; iter++) {
+			if(cancelled)
+				return;
+			
+			tree.build(x, y, n);
+			updateClusterCenters();
+			accumulateForces(tree, k);
+			move(temperature);
+			
+			temperature -= cooling;
+			taskMonitor.setProgress((double) iter / iterations);
+		}
+		
+		undoSupport.postEdit(new LayoutEdit("Cluster Force Layout", netView));
+		for(int i = 0; i < n; i++) {
+			var nodeView = netView.getNodeView(nodes[i]);
+			if(nodeView != null) {
+				nodeView.setVisualProperty(NODE_X_LOCATION, x[i]);
+				nodeView.setVisualProperty(NODE_Y_LOCATION, y[i]);
+			}
+		}
+		netView.fitContent();
+		netView.updateView();
+	}
+	
+	
+	/**
+	 * Copies the visible nodes and the edges between them into the arrays.
+	 */
+	private void load() {
+		var network = annotationSet.getParent().getNetwork();
+		var snapshot = annotationSet.getParent().getViewSnapshot();
+		
+		List<CyNode> nodeList = new ArrayList<>();
+		for(CyNode node : network.getNodeList()) {
+			if(snapshot.hasView(node) && snapshot.isVisible(node)) {
+				nodeList.add(node);
+			}
+		}
+		
+		n = nodeList.size();
+		nodes = nodeList.toArray(new CyNode[n]);
+		x = new double[n];
+		y = new double[n];
+		fx = new double[n];
+		fy = new double[n];
+		cluster = new int[n];
+		
+		Map<CyNode,Integer> indexes = new HashMap<>(n * 2);
+		for(int i = 0; i < n; i++) {
+			indexes.put(nodes[i], i);
+			x[i] = snapshot.getX(nodes[i]);
+			y[i] = snapshot.getY(nodes[i]);
+			cluster[i] = -1;
+			centerX += x[i] / n;
+			centerY += y[i] / n;
+		}
+		
+		List<Cluster> clusters = new ArrayList<>(annotationSet.getClusters());
+		clusterX = new double[clusters.size()];
+		clusterY = new double[clusters.size()];
+		clusterSize = new int[clusters.size()];
+		for(int c = 0; c < clusters.size(); c++) {
+			for(CyNode node : clusters.get(c).getNodes()) {
+				Integer i = indexes.get(node);
+				if(i != null && cluster[i] < 0)
+					cluster[i] = c;
+			}
+		}
+		
+		// count the degrees first, then fill in the neighbours
+		List<CyEdge> edges = network.getEdgeList();
+		int[] sources = new int[edges.size()];
+		int[] targetIds = new int[edges.size()];
+		int m = 0;
+		offsets = new int[n + 1];
+		for(CyEdge edge : edges) {
+			Integer s = indexes.get(edge.getSource());
+			Integer t = indexes.get(edge.getTarget());
+			if(s != null && t != null && !s.equals(t)) {
+				sources[m] = s;
+				targetIds[m] = t;
+				m++;
+				offsets[s + 1]++;
+				offsets[t + 1]++;
+			}
+		}
+		for(int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		targets = new int[offsets[n]];
+		int[] next = new int[n];
+		for(int e = 0; e < m; e++) {
+			int s = sources[e], t = targetIds[e];
+			targets[offsets[s] + next[s]++] = t;
+			targets[offsets[t] + next[t]++] = s;
+		}
+	}
+	
+	
+	private void updateClusterCenters() {
+		Arrays.fill(clusterX, 0);
+		Arrays.fill(clusterY, 0);
+		Arrays.fill(clusterSize, 0);
+		for(int i = 0; i < n; i++) {
+			int c = cluster[i];
+			if(c >= 0) {
+				clusterX[c] += x[i];
+				clusterY[c] += y[i];
+				clusterSize[c]++;
+			}
+		}
+		for(int c = 0; c < clusterSize.length; c++) {
+			if(clusterSize[c] > 0) {
+				clusterX[c] /= clusterSize[c];
+				clusterY[c] /= clusterSize[c];
+			}
+		}
+	}
+	
+	
+	/**
+	 * Computes the force on every node into fx and fy. Each node only writes its own slot so the
+	 * nodes can be processed in parallel.
+	 */
+	private void accumulateForces(QuadTree tree, double k) {
+		if(n < PARALLEL_MIN_NODES) {
+			accumulateForces(tree, k, 0, n);
+		} else {
+			int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			IntStream.range(0, chunks).parallel().forEach(chunk -> {
+				int start = chunk * CHUNK_SIZE;
+				accumulateForces(tree, k, start, Math.min(n, start + CHUNK_SIZE));
+			});
+		}
+	}
+	
+	private void accumulateForces(QuadTree tree, double k, int start, int end) {
+		final double theta = context.theta;
+		final double repulsion = k * k;
+		final double interCluster = context.interClusterEdgeStrength / 100.0;
+		final double clusterGravity = context.clusterGravity / 100.0 * CLUSTER_GRAVITY_SCALE;
+		final double[] force = new double[2];
+		final int[] stack = tree.newStack();
+		
+		for(int i = start; i < end; i++) {
+			force[0] = force[1] = 0;
+			tree.repulsion(i, theta, repulsion, force, stack);
+			
+			// springs, the force is d^2/k along the edge
+			for(int e = offsets[i]; e < offsets[i + 1]; e++) {
+				int j = targets[e];
+				double dx = x[j] - x[i];
+				double dy = y[j] - y[i];
+				double d = Math.sqrt(dx * dx + dy * dy);
+				double f = d / k;
+				if(cluster[i] >= 0 && cluster[j] >= 0 && cluster[i] != cluster[j])
+					f *= interCluster;
+				force[0] += dx * f;
+				force[1] += dy * f;
+			}
+			
+			int c = cluster[i];
+			if(c >= 0) {
+				force[0] += (clusterX[c] - x[i]) * clusterGravity;
+				force[1] += (clusterY[c] - y[i]) * clusterGravity;
+			}
+			// weak pull towards the original center keeps disconnected parts from drifting away
+			fx[i] = force[0] + (centerX - x[i]) * GLOBAL_GRAVITY;
+			fy[i] = force[1] + (centerY - y[i]) * GLOBAL_GRAVITY;
+		}
+	}
+	
+	
+	private void move(double temperature) {
+		for(int i = 0; i < n; i++) {
+			double len = Math.sqrt(fx[i] * fx[i] + fy[i] * fy[i]);
+			if(len > 0) {
+				double step = Math.min(len, temperature) / len;
+				x[i] += fx[i] * step;
+				y[i] += fy[i] * step;
+			}
+		}
+	}
+	
+}
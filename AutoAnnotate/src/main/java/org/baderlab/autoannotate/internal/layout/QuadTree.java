@@ -0,0 +1,223 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import java.util.Arrays;
+
+/**
+ * Barnes-Hut quadtree over points stored in primitive arrays. Every point has a mass of 1.
+ * The cells are stored in parallel arrays, the four children of a cell are allocated together.
+ *
+ * <br><br>
+ * The tree is built on one thread, after that {@link #repulsion(int, double, double, double[], int[])}
+ * only reads the tree and may be called from many threads at once, each thread with its own {@link #newStack()}.
+ */
+class QuadTree {
+	
+	private static final int EMPTY = -1;
+	private static final int MULTIPLE = -2; // leaf at the maximum depth holding more than one point
+	private static final int MAX_DEPTH = 40;
+	private static final double MIN_DISTANCE = 0.01;
+	
+	private double[] px, py;
+	
+	private int cellCount;
+	private double[] cellX, cellY, cellSize; // top left corner and width
+	private double[] mass, sumX, sumY;
+	private int[] firstChild;
+	private int[] body;
+	
+	
+	QuadTree(int capacity) {
+		allocate(Math.max(4, capacity * 2));
+	}
+	
+	private void allocate(int cells) {
+		cellX = new double[cells];
+		cellY = new double[cells];
+		cellSize = new double[cells];
+		mass = new double[cells];
+		sumX = new double[cells];
+		sumY = new double[cells];
+		firstChild = new int[cells];
+		body = new int[cells];
+	}
+	
+	private void grow() {
+		int n = cellX.length * 2;
+		cellX = Arrays.copyOf(cellX, n);
+		cellY = Arrays.copyOf(cellY, n);
+		cellSize = Arrays.copyOf(cellSize, n);
+		mass = Arrays.copyOf(mass, n);
+		sumX = Arrays.copyOf(sumX, n);
+		sumY = Arrays.copyOf(sumY, n);
+		firstChild = Arrays.copyOf(firstChild, n);
+		body = Arrays.copyOf(body, n);
+	}
+	
+	private int newCell(double x, double y, double size) {
+		if(cellCount == cellX.length)
+			grow();
+		int c = cellCount++;
+		cellX[c] = x;
+		cellY[c] = y;
+		cellSize[c] = size;
+		mass[c] = sumX[c] = sumY[c] = 0;
+		firstChild[c] = EMPTY;
+		body[c] = EMPTY;
+		return c;
+	}
+	
+	
+	/**
+	 * Rebuilds the tree from the first n points, the arrays are kept and must not change until the next build.
+	 */
+	void build(double[] x, double[] y, int n) {
+		this.px = x;
+		this.py = y;
+		
+		double xmin = Double.MAX_VALUE, ymin = Double.MAX_VALUE;
+		double xmax = -Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
+		for(int i = 0; i < n; i++) {
+			xmin = Math.min(xmin, x[i]);
+			xmax = Math.max(xmax, x[i]);
+			ymin = Math.min(ymin, y[i]);
+			ymax = Math.max(ymax, y[i]);
+		}
+		
+		cellCount = 0;
+		double size = Math.max(Math.max(xmax - xmin, ymax - ymin), 1) * 1.0001;
+		newCell(xmin, ymin, size);
+		
+		for(int i = 0; i < n; i++) {
+			insert(i);
+		}
+	}
+	
+	private void insert(int i) {
+		double x = px[i], y = py[i];
+		int c = 0;
+		int depth = 0;
+		while(true) {
+			mass[c] += 1;
+			sumX[c] += x;
+			sumY[c] += y;
+			
+			if(firstChild[c] == EMPTY) {
+				if(body[c] == EMPTY) {
+					body[c] = i;
+					return;
+				}
+				if(depth >= MAX_DEPTH) {
+					body[c] = MULTIPLE;
+					return;
+				}
+				split(c);
+			}
+			c = childFor(c, x, y);
+			depth++;
+		}
+	}
+	
+	/**
+	 * Turns the leaf into an internal cell and moves its point into the child that contains it.
+	 */
+	private void split(int c) {
+		double half = cellSize[c] / 2;
+		int first = newCell(cellX[c], cellY[c], half);
+		newCell(cellX[c] + half, cellY[c], half);
+		newCell(cellX[c], cellY[c] + half, half);
+		newCell(cellX[c] + half, cellY[c] + half, half);
+		firstChild[c] = first;
+		
+		int b = body[c];
+		body[c] = EMPTY;
+		int q = childFor(c, px[b], py[b]);
+		mass[q] = 1;
+		sumX[q] = px[b];
+		sumY[q] = py[b];
+		body[q] = b;
+	}
+	
+	private int childFor(int c, double x, double y) {
+		double half = cellSize[c] / 2;
+		int q = 0;
+		if(x >= cellX[c] + half)
+			q += 1;
+		if(y >= cellY[c] + half)
+			q += 2;
+		return firstChild[c] + q;
+	}
+	
+	
+	/**
+	 * Returns a traversal stack for {@link #repulsion(int, double, double, double[], int[])}, 
+	 * it can be reused for any number of calls on the same thread.
+	 */
+	int[] newStack() {
+		return new int[MAX_DEPTH * 3 + 4];
+	}
+	
+	
+	/**
+	 * Adds the repulsion force on point i from all the other points to force[0] and force[1].
+	 * The force from a point at distance d is strength/d, distant cells whose width divided by
+	 * their distance is below theta are approximated by their center of mass. Cells that contain 
+	 * point i itself are never approximated, they are opened and the point is left out of their mass.
+	 */
+	void repulsion(int i, double theta, double strength, double[] force, int[] stack) {
+		double x = px[i], y = py[i];
+		int top = 0;
+		stack[top++] = ~0; // cells that contain the point are pushed as ~cell, starting with the root
+		
+		while(top > 0) {
+			int entry = stack[--top];
+			boolean containsPoint = entry < 0;
+			int c = containsPoint ? ~entry : entry;
+			
+			double m = mass[c];
+			double cx = sumX[c], cy = sumY[c];
+			if(containsPoint) { // leave out the point itself
+				m -= 1;
+				cx -= x;
+				cy -= y;
+			}
+			if(m == 0)
+				continue;
+			
+			if(firstChild[c] != EMPTY && containsPoint) {
+				// the child that contains the point is found the same way the point was inserted
+				int first = firstChild[c];
+				int own = childFor(c, x, y);
+				for(int q = 0; q < 4; q++) {
+					if(mass[first + q] > 0)
+						stack[top++] = first + q == own ? ~(first + q) : first + q;
+				}
+				continue;
+			}
+			
+			cx /= m;
+			cy /= m;
+			double dx = x - cx;
+			double dy = y - cy;
+			double d = Math.sqrt(dx * dx + dy * dy);
+			
+			if(firstChild[c] == EMPTY || cellSize[c] < theta * d) {
+				if(d < MIN_DISTANCE) { // coincident points, push apart in a direction that depends on the point
+					double angle = i * 2.399963; // golden angle
+					dx = Math.cos(angle) * MIN_DISTANCE;
+					dy = Math.sin(angle) * MIN_DISTANCE;
+					d = MIN_DISTANCE;
+				}
+				double f = strength * m / (d * d);
+				force[0] += dx * f;
+				force[1] += dy * f;
+			} else {
+				int first = firstChild[c];
+				for(int q = 0; q < 4; q++) {
+					if(mass[first + q] > 0)
+						stack[top++] = first + q;
+				}
+			}
+		}
+	}
+	
+}
@@ -1,8 +1,10 @@
 package org.baderlab.autoannotate.internal.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -13,8 +15,6 @@ import org.baderlab.autoannotate.internal.model.ModelEvents.ModelEvent;
 import org.baderlab.autoannotate.internal.model.io.CreationParameter;
 import org.cytoscape.model.CyNode;
 
-import com.google.common.collect.ImmutableList;
-
 public class AnnotationSet {
 
 	private final NetworkViewSet parent;
@@ -26,6 +26,14 @@ public class AnnotationSet {
 	private final String labelColumn;
 	private LinkedHashSet<Cluster> clusters;
 	
+	// Reverse indexes, kept up to date by Cluster whenever its nodes change.
+	// The clusters of each node are stored by the NodeIndex id of the node, an entry is null, a Cluster,
+	// or a Cluster[] in the uncommon case that the node is in more than one cluster.
+	private Object[] nodeClusters = new Object[0];
+	private final Map<Cluster,Integer> positionIndex = new HashMap<>();
+	private boolean positionIndexValid = true;
+	private int membershipVersion = 0;
+	
 	
 	/**
 	 * Create an empty AnnotationSet with default DisplayOptions.
@@ -56,7 +64,7 @@ public class AnnotationSet {
 		
 		for(var cb : clusterBuilders) {
 			Cluster cluster = new Cluster(this, cb.nodes, cb.label, cb.collapsed, cb.manual);
-			clusters.add(cluster);
+			addCluster(cluster);
 			
 			cb.clusterCallback.ifPresent(consumer -> consumer.accept(cluster));
 		}
@@ -66,13 +74,85 @@ public class AnnotationSet {
 		parent.getParent().postEvent(event);
 	}
 	
+	private void addCluster(Cluster cluster) {
+		if(clusters.add(cluster)) {
+			synchronized(positionIndex) {
+				if(positionIndexValid)
+					positionIndex.put(cluster, clusters.size());
+			}
+			indexNodes(cluster, cluster.getNodes());
+		}
+	}
+	
 	public Cluster createCluster(Collection<CyNode> nodes, String label, boolean collapsed) {
 		Cluster cluster = new Cluster(this, nodes, label, collapsed, false);
-		clusters.add(cluster);
+		addCluster(cluster);
 		postEvent(new ModelEvents.ClusterAdded(cluster));
 		return cluster;
 	}
 	
+	/**
+	 * Called by Cluster when nodes are added to it.
+	 */
+	void indexNodes(Cluster cluster, Collection<CyNode> nodes) {
+		membershipVersion++;
+		NodeIndex index = parent.getNodeIndex();
+		for(CyNode node : nodes) {
+			int id = index.getOrAssign(node);
+			if(id >= nodeClusters.length)
+				nodeClusters = Arrays.copyOf(nodeClusters, Math.max(id + 1, nodeClusters.length * 2));
+			
+			Object entry = nodeClusters[id];
+			if(entry == null) {
+				nodeClusters[id] = cluster;
+			} else if(entry instanceof Cluster) {
+				if(entry != cluster)
+					nodeClusters[id] = new Cluster[] { (Cluster)entry, cluster };
+			} else {
+				Cluster[] array = (Cluster[]) entry;
+				if(!Arrays.asList(array).contains(cluster)) {
+					array = Arrays.copyOf(array, array.length + 1); // copy on write, the arrays are handed out by getClusters(CyNode)
+					array[array.length - 1] = cluster;
+					nodeClusters[id] = array;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Called by Cluster when nodes are removed from it.
+	 */
+	void unindexNodes(Cluster cluster, Collection<CyNode> nodes) {
+		membershipVersion++;
+		NodeIndex index = parent.getNodeIndex();
+		for(CyNode node : nodes) {
+			int id = index.getId(node);
+			if(id < 0 || id >= nodeClusters.length)
+				continue;
+			
+			Object entry = nodeClusters[id];
+			if(entry == cluster) {
+				nodeClusters[id] = null;
+			} else if(entry instanceof Cluster[]) {
+				List<Cluster> list = new ArrayList<>(Arrays.asList((Cluster[]) entry));
+				list.remove(cluster);
+				nodeClusters[id] = list.size() == 1 ? list.get(0) : list.toArray(new Cluster[list.size()]);
+			}
+		}
+	}
+	
+	private Object getEntry(CyNode node) {
+		int id = parent.getNodeIndex().getId(node);
+		return id >= 0 && id < nodeClusters.length ? nodeClusters[id] : null;
+	}
+	
+	/**
+	 * Incremented whenever a node is added to or removed from a cluster, or a cluster is added or removed.
+	 */
+	int getMembershipVersion() {
+		return membershipVersion;
+	}
+	
 	public String getName() {
 		return name;
 	}
@@ -105,18 +185,40 @@ public class AnnotationSet {
 	}
 	
 	public Optional<Cluster> getCluster(CyNode node) {
-		return clusters.stream().filter(c -> c.contains(node)).findFirst();
+		Object entry = getEntry(node);
+		if(entry == null)
+			return Optional.empty();
+		return Optional.of(entry instanceof Cluster ? (Cluster) entry : ((Cluster[]) entry)[0]);
 	}
 	
+	/**
+	 * Returns all the clusters that contain the given node, usually there is only one.
+	 */
+	public Collection<Cluster> getClusters(CyNode node) {
+		Object entry = getEntry(node);
+		if(entry == null)
+			return Collections.emptyList();
+		if(entry instanceof Cluster)
+			return Collections.singletonList((Cluster) entry);
+		return Collections.unmodifiableList(Arrays.asList((Cluster[]) entry));
+	}
+	
+	/**
+	 * Returns the 1-based position of the cluster in this annotation set, or 0 if the cluster is not part of this set.
+	 */
 	public int getClusterIndex(Cluster cluster) {
-		int i = 1;
-		for(var c : clusters) {
-			if(c == cluster) {
-				return i;
+		synchronized(positionIndex) { // called from parallel rendering threads
+			if(!positionIndexValid) {
+				positionIndex.clear();
+				int i = 1;
+				for(var c : clusters) {
+					positionIndex.put(c, i++);
+				}
+				positionIndexValid = true;
 			}
-			++i;
+			Integer index = positionIndex.get(cluster);
+			return index == null ? 0 : index;
 		}
-		return 0;
 	}
 	
 	public NetworkViewSet getParent() {
@@ -136,13 +238,23 @@ public class AnnotationSet {
 	}
 
 	public void removeNodes(Collection<CyNode> nodes) {
-		for(Cluster cluster : ImmutableList.copyOf(clusters)) { // avoid ConcurrentModificationException
+		// Use the index to find only the clusters that are affected
+		Set<Cluster> affected = new LinkedHashSet<>();
+		for(CyNode node : nodes) {
+			affected.addAll(getClusters(node));
+		}
+		for(Cluster cluster : affected) {
 			cluster.removeNodes(nodes);
 		}
 	}
 
 	void delete(Cluster cluster) {
 		if(clusters.remove(cluster)) {
+			unindexNodes(cluster, cluster.getNodes());
+			synchronized(positionIndex) {
+				positionIndex.clear();
+				positionIndexValid = false; // positions of the following clusters have shifted
+			}
 			postEvent(new ModelEvents.ClusterRemoved(cluster));
 		}
 	}
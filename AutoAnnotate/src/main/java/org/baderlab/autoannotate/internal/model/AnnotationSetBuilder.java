@@ -78,7 +78,8 @@ public class AnnotationSetBuilder {
 		final Optional<Consumer<Cluster>> clusterCallback;
 		
 		ClusterBuilder(Collection<CyNode> nodes, String label, boolean collapsed, boolean manual, Consumer<Cluster> callback) {
-			this.nodes = nodes;
+			// Store as a NodeSet so the Cluster can share the array instead of making another copy
+			this.nodes = nvs == null ? nodes : NodeSet.of(nvs.getNodeIndex(), nodes);
 			this.label = label;
 			this.collapsed = collapsed;
 			this.manual = manual;
@@ -0,0 +1,17 @@
+package org.baderlab.autoannotate.internal.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link com.google.common.eventbus.Subscribe} method that should receive events
+ * on the {@link ModelEventBus} async thread instead of the thread that posted the event.
+ * Use for subscribers that are slow and don't need to finish before the poster continues.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface AsyncSubscribe {
+	
+}
@@ -1,5 +1,7 @@
 package org.baderlab.autoannotate.internal.model;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -12,6 +14,7 @@ import org.cytoscape.model.CyEdge.Type;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.VisualProperty;
 
 
 public class Cluster {
@@ -19,11 +22,18 @@ public class Cluster {
 	private final AnnotationSet parent;
 	
 	private String label;
-	private Set<CyNode> nodes;
+	private volatile NodeSet nodes;
 	private boolean collapsed;
 	
 	private @Nullable Long highlightedNode = null; // May be null
 	
+	// Loaded lazily, discarded when the nodes in the cluster change.
+	private @Nullable ClusterGeometry geometry = null;
+	
+	// Induced edges, computed lazily, discarded when the nodes in the cluster or the edges in the network change.
+	private volatile @Nullable CyEdge[] edges = null;
+	private int edgesVersion = 0;
+	
 	/**
 	 * Flag indicating if the cluster label was manually renamed by the user.
 	 * @since 1.3.4
@@ -32,7 +42,7 @@ public class Cluster {
 	
 	Cluster(AnnotationSet parent, Collection<CyNode> nodes, String label, boolean collapsed, boolean manual) {
 		this.parent = parent;
-		this.nodes = new HashSet<>(nodes);
+		this.nodes = NodeSet.of(parent.getParent().getNodeIndex(), nodes);
 		this.label = label;
 		this.collapsed = collapsed;
 		this.manual = manual;
@@ -46,13 +56,68 @@ public class Cluster {
 		return parent;
 	}
 	
+	private synchronized ClusterGeometry getGeometry() {
+		if(geometry == null) {
+			geometry = ClusterGeometry.load(parent.getParent().getViewSnapshot(), nodes);
+		}
+		return geometry;
+	}
+	
+	private synchronized void nodesChanged() {
+		geometry = null;
+		invalidateEdges();
+	}
+	
+	/**
+	 * Called by the ModelManager when edges that may be induced by this cluster are added or removed.
+	 */
+	synchronized void invalidateEdges() {
+		edges = null;
+		edgesVersion++;
+	}
+	
+	/**
+	 * Called by the ModelManager when a node in this cluster changes in the network view.
+	 */
+	synchronized void updateGeometry(CyNode node, VisualProperty<?> vp, Object value) {
+		if(geometry != null && !geometry.update(node, vp, value)) {
+			geometry = null;
+		}
+	}
+	
+	/**
+	 * Returns the bounds of the cluster along with the per-node coordinates and radii.
+	 * Does not access the network view, the geometry is maintained from view change events.
+	 */
 	public CoordinateData getCoordinateData(boolean includeHiddenNodes) {
-		return CoordinateData.forNodes(parent.getParent().getNetworkView(), nodes, includeHiddenNodes);
+		return getGeometry().getCoordinateData(includeHiddenNodes);
+	}
+	
+	/**
+	 * Returns the bounds of the cluster without the per-node data. Usually runs in constant time.
+	 */
+	public CoordinateData getBounds(boolean includeHiddenNodes) {
+		return getGeometry().getBounds(includeHiddenNodes);
 	}
 	
 	public CoordinateData getCoordinateData() {
 		return getCoordinateData(true);
 	}
+	
+	/**
+	 * Returns a value that changes whenever the position, size or visibility of any node in the cluster changes,
+	 * or when the nodes of the cluster change. Values are never reused, even across clusters.
+	 */
+	public long getGeometryVersion() {
+		return getGeometry().getVersion();
+	}
+	
+	/**
+	 * Returns the number of nodes in the cluster that are hidden. Maintained from view change events.
+	 */
+	public int getHiddenNodeCount() {
+		return getGeometry().getHiddenCount();
+	}
 
 	public String getLabel() {
 		return label;
@@ -67,30 +132,60 @@ public class Cluster {
 	}
 	
 	public int getEdgeCount() {
-		return getEdges().size(); // TODO optimize
+		return getInducedEdges().length;
 	}
 	
 	public int getExpandedNodeCount() {
 		return getRoot().getExpandedNodeCount(this);
 	}
 	
-	public Set<CyNode> getNodes() {
-		return Collections.unmodifiableSet(nodes);
+	/**
+	 * Returns an immutable snapshot of the nodes in the cluster.
+	 */
+	public NodeSet getNodes() {
+		return nodes;
 	}
 	
 	public Set<CyEdge> getEdges() {
+		return new HashSet<>(Arrays.asList(getInducedEdges()));
+	}
+	
+	private CyEdge[] getInducedEdges() {
+		CyEdge[] cached = edges;
+		if(cached != null)
+			return cached;
+		
+		int version;
+		synchronized(this) {
+			version = edgesVersion;
+		}
+		
 		var network = getNetwork();
 		var nodes = getNodes();
-		var edges = new HashSet<CyEdge>();
+		var induced = new ArrayList<CyEdge>();
+		Set<CyEdge> selfLoops = null;
 		
 		for(var node : nodes) {
 			for(var edge : network.getAdjacentEdgeIterable(node, Type.ANY)) {
-				if(nodes.contains(edge.getSource()) && nodes.contains(edge.getTarget())) {
-					edges.add(edge);
+				// count each edge once, from its source node
+				if(node.equals(edge.getSource()) && nodes.contains(edge.getTarget())) {
+					if(node.equals(edge.getTarget())) {
+						if(selfLoops == null)
+							selfLoops = new HashSet<>();
+						if(!selfLoops.add(edge))
+							continue;
+					}
+					induced.add(edge);
 				}
 			}
 		}
-		return edges;
+		
+		cached = induced.toArray(new CyEdge[induced.size()]);
+		synchronized(this) {
+			if(version == edgesVersion) // don't cache if invalidated while computing
+				edges = cached;
+		}
+		return cached;
 	}
 	
 	public boolean isCollapsed() {
@@ -108,8 +203,10 @@ public class Cluster {
 	void collapse(CyNode groupNode) {
 		if(collapsed)
 			throw new IllegalStateException("Already collapsed");
-		this.nodes.clear();
-		this.nodes.add(groupNode);
+		parent.unindexNodes(this, this.nodes);
+		this.nodes = NodeSet.of(parent.getParent().getNodeIndex(), Collections.singleton(groupNode));
+		parent.indexNodes(this, this.nodes);
+		nodesChanged();
 		collapsed = true;
 		getRoot().addPendingGroupEvent(new ModelEvents.ClustersChanged(this));
 	}
@@ -117,8 +214,10 @@ public class Cluster {
 	void expand(Set<CyNode> nodes) {
 		if(!collapsed)
 			throw new IllegalStateException("Already expanded");
-		this.nodes.clear();
-		this.nodes.addAll(nodes);
+		parent.unindexNodes(this, this.nodes);
+		this.nodes = NodeSet.of(parent.getParent().getNodeIndex(), nodes);
+		parent.indexNodes(this, this.nodes);
+		nodesChanged();
 		collapsed = false;
 		getRoot().addPendingGroupEvent(new ModelEvents.ClustersChanged(this));
 	}
@@ -145,8 +244,12 @@ public class Cluster {
 	}
 
 	public void removeNodes(Collection<CyNode> nodesToRemove) {
-		boolean changed = nodes.removeAll(nodesToRemove);
-		if(changed) {
+		NodeSet remaining = nodes.difference(nodesToRemove);
+		if(remaining != nodes) {
+			NodeSet removed = nodes.difference(remaining);
+			nodes = remaining;
+			parent.unindexNodes(this, removed);
+			nodesChanged();
 			if(nodes.isEmpty())
 				delete();
 			else 
@@ -0,0 +1,278 @@
+package org.baderlab.autoannotate.internal.model;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_HEIGHT;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_SIZE;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_VISIBLE;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_WIDTH;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_X_LOCATION;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_Y_LOCATION;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.VisualProperty;
+
+/**
+ * Live geometry of the nodes in a cluster, stored in primitive arrays.
+ *
+ * The geometry is loaded from the ViewSnapshot of the network view once, after that it is kept
+ * up to date by the ModelManager using the values in the ViewChangedEvent payloads. This way
+ * rendering a cluster does not require any visual property lookups.
+ *
+ * Extents are maintained incrementally, when a node on the boundary moves inwards the
+ * extents are marked dirty and recomputed from the arrays the next time they are needed.
+ *
+ * <br><br>
+ * Thread safe.
+ */
+class ClusterGeometry {
+	
+	private static final double MIN_DEFAULT =  100000000;
+	private static final double MAX_DEFAULT = -100000000;
+	
+	private final CyNode[] nodes;
+	private final NodeIndex index;
+	private final int[] ids; // sorted NodeIndex ids, the slot of a node is the position of its id
+	
+	private final double[] x;
+	private final double[] y;
+	private final double[] radius;
+	private final boolean[] visible;
+	private final boolean[] present; // false if the node doesn't have a view
+	
+	private final Extents all = new Extents(false);
+	private final Extents visibleOnly = new Extents(true);
+	
+	// Versions are unique across all geometries so that a version identifies the state of a cluster even after its geometry is reloaded.
+	private static final AtomicLong VERSIONS = new AtomicLong();
+	
+	private long version = VERSIONS.incrementAndGet();
+	
+	
+	/**
+	 * Aggregate bounds and centroid sums over a subset of the nodes.
+	 */
+	private class Extents {
+		final boolean visibleOnly;
+		double xmin, xmax, ymin, ymax;
+		double sumX, sumY;
+		int count;
+		boolean dirty = true;
+		
+		Extents(boolean visibleOnly) {
+			this.visibleOnly = visibleOnly;
+		}
+		
+		boolean includes(int i) {
+			return present[i] && (!visibleOnly || visible[i]);
+		}
+		
+		void remove(double px, double py) {
+			sumX -= px;
+			sumY -= py;
+			count--;
+			if(px == xmin || px == xmax || py == ymin || py == ymax) {
+				dirty = true;
+			}
+		}
+		
+		void add(double px, double py) {
+			sumX += px;
+			sumY += py;
+			if(!dirty) {
+				if(count == 0) {
+					xmin = xmax = px;
+					ymin = ymax = py;
+				} else {
+					xmin = Math.min(xmin, px);
+					xmax = Math.max(xmax, px);
+					ymin = Math.min(ymin, py);
+					ymax = Math.max(ymax, py);
+				}
+			}
+			count++;
+		}
+		
+		void recompute() {
+			xmin = ymin = MIN_DEFAULT;
+			xmax = ymax = MAX_DEFAULT;
+			sumX = sumY = 0;
+			count = 0;
+			for(int i = 0; i < nodes.length; i++) {
+				if(includes(i)) {
+					xmin = Math.min(xmin, x[i]);
+					xmax = Math.max(xmax, x[i]);
+					ymin = Math.min(ymin, y[i]);
+					ymax = Math.max(ymax, y[i]);
+					sumX += x[i];
+					sumY += y[i];
+					count++;
+				}
+			}
+			dirty = false;
+		}
+	}
+	
+	
+	private ClusterGeometry(NodeSet nodes) {
+		int n = nodes.size();
+		this.nodes = nodes.toArray(new CyNode[n]); // iterates in id order
+		this.index = nodes.getIndex();
+		this.ids = nodes.getIds();
+		this.x = new double[n];
+		this.y = new double[n];
+		this.radius = new double[n];
+		this.visible = new boolean[n];
+		this.present = new boolean[n];
+	}
+	
+	
+	/**
+	 * Bulk loads the geometry for the given nodes from the snapshot of the network view.
+	 */
+	static ClusterGeometry load(ViewSnapshot snapshot, NodeSet nodes) {
+		var geometry = new ClusterGeometry(nodes);
+		snapshot.read(geometry.nodes, geometry.x, geometry.y, geometry.radius, geometry.visible, geometry.present);
+		return geometry;
+	}
+	
+	
+	/**
+	 * Returns true if the visual property is tracked by this class.
+	 * NODE_SIZE and NODE_HEIGHT are tracked because they can change the width when the node size is locked.
+	 */
+	static boolean isTracked(VisualProperty<?> vp) {
+		return vp == NODE_X_LOCATION || vp == NODE_Y_LOCATION || vp == NODE_VISIBLE || vp == NODE_WIDTH || vp == NODE_SIZE || vp == NODE_HEIGHT;
+	}
+	
+	
+	/**
+	 * Applies a single visual property change. Returns false if the change could not be applied,
+	 * in which case the caller should discard this geometry and load it again.
+	 */
+	synchronized boolean update(CyNode node, VisualProperty<?> vp, Object value) {
+		int id = index.getId(node);
+		int i = id < 0 ? -1 : Arrays.binarySearch(ids, id);
+		if(i < 0)
+			return true; // not in this cluster
+		if(!present[i])
+			return false; // the node view was created after the geometry was loaded
+		
+		double nx = x[i], ny = y[i];
+		boolean nvis = visible[i];
+		
+		if(vp == NODE_X_LOCATION || vp == NODE_Y_LOCATION || vp == NODE_WIDTH) {
+			if(!(value instanceof Number))
+				return false;
+			double d = ((Number)value).doubleValue();
+			if(vp == NODE_X_LOCATION)
+				nx = d;
+			else if(vp == NODE_Y_LOCATION)
+				ny = d;
+			else {
+				radius[i] = d;
+				version = VERSIONS.incrementAndGet();
+				return true;
+			}
+		} else if(vp == NODE_VISIBLE) {
+			if(value == null)
+				return false; // a bypass was cleared, the value has to be read from the view
+			nvis = !Boolean.FALSE.equals(value);
+		} else if(vp == NODE_SIZE || vp == NODE_HEIGHT) {
+			return false; // the resulting width depends on the node size lock, read it from the view
+		} else {
+			return true;
+		}
+		
+		if(nx == x[i] && ny == y[i] && nvis == visible[i])
+			return true;
+		
+		all.remove(x[i], y[i]);
+		if(visible[i])
+			visibleOnly.remove(x[i], y[i]);
+		
+		x[i] = nx;
+		y[i] = ny;
+		visible[i] = nvis;
+		
+		all.add(nx, ny);
+		if(nvis)
+			visibleOnly.add(nx, ny);
+		
+		version = VERSIONS.incrementAndGet();
+		return true;
+	}
+	
+	
+	/**
+	 * Changes every time the geometry changes.
+	 */
+	synchronized long getVersion() {
+		return version;
+	}
+	
+	synchronized int getVisibleCount() {
+		return getExtents(false).count;
+	}
+	
+	synchronized int getHiddenCount() {
+		return getExtents(true).count - getExtents(false).count;
+	}
+	
+	private Extents getExtents(boolean includeHiddenNodes) {
+		Extents extents = includeHiddenNodes ? all : visibleOnly;
+		if(extents.dirty)
+			extents.recompute();
+		return extents;
+	}
+	
+	
+	/**
+	 * Returns the bounds of the nodes without any per-node data, runs in constant time
+	 * unless a node on the boundary moved inwards.
+	 */
+	synchronized CoordinateData getBounds(boolean includeHiddenNodes) {
+		Extents e = getExtents(includeHiddenNodes);
+		return new CoordinateData(e.xmin, e.xmax, e.ymin, e.ymax, e.sumX, e.sumY, e.count, null, null, null, null);
+	}
+	
+	
+	/**
+	 * Returns the bounds along with a copy of the per-node coordinates and radii.
+	 */
+	synchronized CoordinateData getCoordinateData(boolean includeHiddenNodes) {
+		Extents e = getExtents(includeHiddenNodes);
+		int n = e.count;
+		
+		CyNode[] ns = new CyNode[n];
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		double[] rs = new double[n];
+		
+		if(n == nodes.length) {
+			System.arraycopy(nodes, 0, ns, 0, n);
+			System.arraycopy(x, 0, xs, 0, n);
+			System.arraycopy(y, 0, ys, 0, n);
+			System.arraycopy(radius, 0, rs, 0, n);
+		} else {
+			int j = 0;
+			for(int i = 0; i < nodes.length; i++) {
+				if(e.includes(i)) {
+					ns[j] = nodes[i];
+					xs[j] = x[i];
+					ys[j] = y[i];
+					rs[j] = radius[i];
+					j++;
+				}
+			}
+		}
+		
+		return new CoordinateData(e.xmin, e.xmax, e.ymin, e.ymax, e.sumX, e.sumY, n, ns, xs, ys, rs);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "ClusterGeometry [nodes=" + nodes.length + ", version=" + version + "]";
+	}
+}
@@ -18,8 +18,17 @@ public class CoordinateData {
 	private final double ymin;
 	private final double ymax;
 	
-	private final Map<CyNode,double[]> coordinates;
-	private final Map<CyNode,Double> radii;
+	private Map<CyNode,double[]> coordinates;
+	private Map<CyNode,Double> radii;
+	
+	// Primitive per-node data, used when created from a ClusterGeometry, may be null
+	private final double sumX;
+	private final double sumY;
+	private final int count;
+	private final CyNode[] nodeArray;
+	private final double[] xArray;
+	private final double[] yArray;
+	private final double[] radiusArray;
 	
 	
 	
@@ -61,6 +70,24 @@ public class CoordinateData {
 		return forNodes(networkView, nodes, true);
 	}
 	
+	/**
+	 * Creates coordinate data from node positions that are not in the network view yet, for example while a layout is running.
+	 * The arrays are not copied.
+	 */
+	public static CoordinateData forPositions(CyNode[] nodes, double[] xs, double[] ys, double[] radii) {
+		double xmin = 100000000, xmax = -100000000, ymin = 100000000, ymax = -100000000;
+		double sumX = 0, sumY = 0;
+		for(int i = 0; i < nodes.length; i++) {
+			xmin = Math.min(xmin, xs[i]);
+			xmax = Math.max(xmax, xs[i]);
+			ymin = Math.min(ymin, ys[i]);
+			ymax = Math.max(ymax, ys[i]);
+			sumX += xs[i];
+			sumY += ys[i];
+		}
+		return new CoordinateData(xmin, xmax, ymin, ymax, sumX, sumY, nodes.length, nodes, xs, ys, radii);
+	}
+	
 	
 	public CoordinateData(double xmin, double xmax, double ymin, double ymax, Map<CyNode,double[]> coordinates, Map<CyNode,Double> radii) {
 		this.xmin = xmin;
@@ -69,6 +96,40 @@ public class CoordinateData {
 		this.ymax = ymax;
 		this.coordinates = coordinates;
 		this.radii = radii;
+		this.count = coordinates == null ? 0 : coordinates.size();
+		this.nodeArray = null;
+		this.xArray = null;
+		this.yArray = null;
+		this.radiusArray = null;
+		
+		double sx = 0, sy = 0;
+		if(coordinates != null) {
+			for(double[] xy : coordinates.values()) {
+				sx += xy[0];
+				sy += xy[1];
+			}
+		}
+		this.sumX = sx;
+		this.sumY = sy;
+	}
+	
+	/**
+	 * Primitive array based constructor, the arrays are not copied. 
+	 * The arrays may be null if only the bounds are needed.
+	 */
+	CoordinateData(double xmin, double xmax, double ymin, double ymax, double sumX, double sumY, int count,
+			CyNode[] nodes, double[] xs, double[] ys, double[] radii) {
+		this.xmin = xmin;
+		this.xmax = xmax;
+		this.ymin = ymin;
+		this.ymax = ymax;
+		this.sumX = sumX;
+		this.sumY = sumY;
+		this.count = count;
+		this.nodeArray = nodes;
+		this.xArray = xs;
+		this.yArray = ys;
+		this.radiusArray = radii;
 	}
 
 	public double getXmin() {
@@ -88,13 +149,78 @@ public class CoordinateData {
 	}
 
 	public Map<CyNode, double[]> getCoordinates() {
+		if(coordinates == null)
+			createMaps();
 		return Collections.unmodifiableMap(coordinates);
 	}
 
 	public Map<CyNode, Double> getRadii() {
+		if(radii == null)
+			createMaps();
 		return Collections.unmodifiableMap(radii);
 	}
 	
+	private synchronized void createMaps() {
+		Map<CyNode,double[]> coordinates = new HashMap<>();
+		Map<CyNode,Double> radii = new HashMap<>();
+		if(nodeArray != null) {
+			for(int i = 0; i < nodeArray.length; i++) {
+				coordinates.put(nodeArray[i], new double[] { xArray[i], yArray[i] });
+				radii.put(nodeArray[i], radiusArray[i]);
+			}
+		}
+		this.coordinates = coordinates;
+		this.radii = radii;
+	}
+	
+	/**
+	 * Returns true if the per-node data is available through {@link #getX(int)}, {@link #getY(int)} and {@link #getRadius(int)}.
+	 */
+	public boolean hasNodeArrays() {
+		return xArray != null;
+	}
+	
+	public int getNodeCount() {
+		return count;
+	}
+	
+	public double getX(int i) {
+		return xArray[i];
+	}
+	
+	public double getY(int i) {
+		return yArray[i];
+	}
+	
+	public double getRadius(int i) {
+		return radiusArray[i];
+	}
+	
+	/**
+	 * The per-node arrays, indexed 0 to {@link #getNodeCount()}-1, or null if {@link #hasNodeArrays()} is false.
+	 * The arrays are shared and must not be modified.
+	 */
+	public double[] getXArray() {
+		return xArray;
+	}
+	
+	public double[] getYArray() {
+		return yArray;
+	}
+	
+	public double[] getRadiusArray() {
+		return radiusArray;
+	}
+	
+	/**
+	 * The mean of the node positions, as opposed to {@link #getCenter()} which is the center of the bounding box.
+	 */
+	public Point2D.Double getCentroid() {
+		if(count == 0)
+			return getCenter();
+		return new Point2D.Double(sumX / count, sumY / count);
+	}
+	
 	public double getCenterX() {
 		return (xmin + xmax) / 2;
 	}
@@ -117,8 +243,7 @@ public class CoordinateData {
 
 	@Override
 	public String toString() {
-		return "CoordinateData [xmin=" + xmin + ", xmax=" + xmax + ", ymin=" + ymin + ", ymax=" + ymax + ", coordinates=" + coordinates + ", radii=" + radii
-				+ "]";
+		return "CoordinateData [xmin=" + xmin + ", xmax=" + xmax + ", ymin=" + ymin + ", ymax=" + ymax + ", count=" + count + "]";
 	}
 	
 	
@@ -26,77 +26,77 @@ public class DebugEventListener {
 	}
 	
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.AnnotationSetAdded event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.AnnotationSetSelected event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.AnnotationSetDeleted event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.AnnotationSetChanged event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.ClustersLabelsUpdated event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.ClusterAdded event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.ClustersChanged event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.ClusterRemoved event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.ClustersSelected event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.NetworkViewSetSelected event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.ClusterSelectedInNetwork event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.NetworkViewSetDeleted event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.NetworkViewSetChanged event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.DisplayOptionChanged event) {
 		print(event);
 	}
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe
 	public void handle(ModelEvents.SignificanceOptionChanged event) {
 		print(event);
 	}
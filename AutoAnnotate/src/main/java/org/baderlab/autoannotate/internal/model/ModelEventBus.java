@@ -0,0 +1,245 @@
+package org.baderlab.autoannotate.internal.model;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Replacement for Guava's EventBus dispatch that keeps the same API and {@link Subscribe} annotations
+ * so it can be injected wherever EventBus is used.
+ * <ul>
+ * <li>Subscriber methods are found once when the listener is registered and are invoked through MethodHandles.</li>
+ * <li>The list of subscribers for each event class is computed once and cached until a listener is registered or unregistered.</li>
+ * <li>Subscribers annotated with {@link AsyncSubscribe} are invoked on a separate thread.</li>
+ * <li>Invocation count and latency are recorded for every subscriber, see {@link #getSubscribers()}.</li>
+ * </ul>
+ * Like Guava, events posted by a subscriber are queued and delivered after the current event
+ * has been delivered to all subscribers, and subscribers are not invoked concurrently unless
+ * annotated with {@link AllowConcurrentEvents}.
+ */
+public class ModelEventBus extends EventBus {
+	
+	private static final Logger logger = LoggerFactory.getLogger(ModelEventBus.class);
+	private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final Subscriber[] NONE = new Subscriber[0];
+	
+	private final List<Subscriber> subscribers = new ArrayList<>(); // guarded by itself
+	private final ConcurrentHashMap<Class<?>,Subscriber[]> dispatchCache = new ConcurrentHashMap<>();
+	
+	private final ExecutorService asyncExecutor;
+	private final ThreadLocal<Queue<Object>> queue = ThreadLocal.withInitial(ArrayDeque::new);
+	private final ThreadLocal<Boolean> dispatching = ThreadLocal.withInitial(() -> false);
+	
+	
+	public ModelEventBus() {
+		super("AutoAnnotate");
+		asyncExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "AutoAnnotate Async Subscribers");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	
+	/**
+	 * A subscriber method on a listener object, along with its latency counters.
+	 */
+	public static final class Subscriber {
+		private final Object listener;
+		private final Method method;
+		private final MethodHandle handle;
+		private final Class<?> eventType;
+		private final boolean async;
+		private final boolean concurrent;
+		
+		private final LongAdder count = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		
+		private Subscriber(Object listener, Method method) throws IllegalAccessException {
+			this.listener = listener;
+			this.method = method;
+			this.eventType = method.getParameterTypes()[0];
+			this.async = method.isAnnotationPresent(AsyncSubscribe.class);
+			this.concurrent = method.isAnnotationPresent(AllowConcurrentEvents.class);
+			method.setAccessible(true);
+			this.handle = MethodHandles.lookup().unreflect(method)
+				.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		}
+		
+		private void invoke(Object event) {
+			long start = System.nanoTime();
+			try {
+				if(concurrent) {
+					handle.invokeExact(listener, event);
+				} else {
+					synchronized(this) {
+						handle.invokeExact(listener, event);
+					}
+				}
+			} catch(Throwable e) {
+				logger.error("Exception thrown by event subscriber " + getName(), e);
+			} finally {
+				long nanos = System.nanoTime() - start;
+				count.increment();
+				totalNanos.add(nanos);
+				maxNanos.accumulateAndGet(nanos, Math::max);
+				if(nanos > SLOW_NANOS && !async) {
+					logger.debug("Slow event subscriber " + getName() + " took " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms");
+				}
+			}
+		}
+		
+		public String getName() {
+			return listener.getClass().getSimpleName() + "." + method.getName() + "(" + eventType.getSimpleName() + ")";
+		}
+		
+		public boolean isAsync() {
+			return async;
+		}
+		
+		public long getInvocationCount() {
+			return count.sum();
+		}
+		
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+		
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+		
+		@Override
+		public String toString() {
+			return "Subscriber [" + getName() + ", count=" + getInvocationCount() + ", totalNanos=" + getTotalNanos() + ", maxNanos=" + getMaxNanos() + "]";
+		}
+	}
+	
+	
+	@Override
+	public void register(Object listener) {
+		List<Subscriber> found = findSubscribers(listener);
+		synchronized(subscribers) {
+			subscribers.addAll(found);
+			dispatchCache.clear();
+		}
+	}
+	
+	@Override
+	public void unregister(Object listener) {
+		synchronized(subscribers) {
+			if(!subscribers.removeIf(s -> s.listener == listener))
+				throw new IllegalArgumentException("missing event subscriber for an annotated method. Is " + listener + " registered?");
+			dispatchCache.clear();
+		}
+	}
+	
+	/**
+	 * Returns all the registered subscribers along with their latency counters.
+	 */
+	public List<Subscriber> getSubscribers() {
+		synchronized(subscribers) {
+			return List.copyOf(subscribers);
+		}
+	}
+	
+	
+	@Override
+	public void post(Object event) {
+		Queue<Object> events = queue.get();
+		events.offer(event);
+		
+		if(dispatching.get())
+			return; // a subscriber posted an event, deliver it after the current one
+		
+		dispatching.set(true);
+		try {
+			Object next;
+			while((next = events.poll()) != null) {
+				dispatch(next);
+			}
+		} finally {
+			dispatching.remove();
+			queue.remove();
+		}
+	}
+	
+	private void dispatch(Object event) {
+		for(Subscriber subscriber : getSubscribers(event.getClass())) {
+			if(subscriber.async) {
+				if(!asyncExecutor.isShutdown())
+					asyncExecutor.execute(() -> subscriber.invoke(event));
+			} else
+				subscriber.invoke(event);
+		}
+	}
+	
+	private Subscriber[] getSubscribers(Class<?> eventClass) {
+		Subscriber[] cached = dispatchCache.get(eventClass);
+		if(cached != null)
+			return cached;
+		
+		synchronized(subscribers) {
+			return dispatchCache.computeIfAbsent(eventClass, c -> {
+				Subscriber[] matching = subscribers.stream()
+					.filter(s -> s.eventType.isAssignableFrom(c))
+					.toArray(Subscriber[]::new);
+				return matching.length == 0 ? NONE : matching;
+			});
+		}
+	}
+	
+	
+	private static List<Subscriber> findSubscribers(Object listener) {
+		List<Subscriber> found = new ArrayList<>();
+		Set<String> seen = new HashSet<>(); // don't register overridden methods twice
+		
+		for(Class<?> c = listener.getClass(); c != null && c != Object.class; c = c.getSuperclass()) {
+			for(Method method : c.getDeclaredMethods()) {
+				if(!method.isAnnotationPresent(Subscribe.class) || method.isSynthetic() || Modifier.isStatic(method.getModifiers()))
+					continue;
+				if(method.getParameterCount() != 1)
+					throw new IllegalArgumentException("Method " + method + " has @Subscribe annotation but has " + method.getParameterCount() + " parameters.");
+				
+				String signature = method.getName() + Arrays.toString(method.getParameterTypes());
+				if(!seen.add(signature))
+					continue;
+				
+				try {
+					found.add(new Subscriber(listener, method));
+				} catch(IllegalAccessException e) {
+					throw new IllegalArgumentException("Cannot access subscriber method " + method, e);
+				}
+			}
+		}
+		return found;
+	}
+	
+	
+	public void shutdown() {
+		asyncExecutor.shutdown();
+	}
+}
@@ -0,0 +1,201 @@
+package org.baderlab.autoannotate.internal.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import org.baderlab.autoannotate.internal.model.ModelEvents.ClustersChanged;
+import org.baderlab.autoannotate.internal.model.ModelEvents.ClustersSelected;
+import org.baderlab.autoannotate.internal.model.ModelEvents.ModelEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fires model events on a separate thread.
+ *
+ * Events that are posted while earlier events are still waiting to be fired are merged
+ * with them, ClustersChanged events for the same annotation set are combined into one
+ * and ClustersSelected events for the same annotation set are combined so that the result
+ * reflects the latest selection. This way listeners only do the work for the latest state
+ * no matter how many Cytoscape events came in while they were busy.
+ *
+ * If too many events are pending then threads that post events block until the
+ * dispatch thread catches up, except for the EDT and the dispatch thread itself.
+ *
+ * <br><br>
+ * Thread safe.
+ */
+class ModelEventDispatcher {
+	
+	private static final Logger logger = LoggerFactory.getLogger(ModelEventDispatcher.class);
+	
+	static final int MAX_PENDING = 100;
+	
+	private final Consumer<ModelEvent> sink;
+	private final ExecutorService executor;
+	private volatile Thread dispatchThread;
+	
+	// Keyed by event type and annotation set, events that can't be merged get a unique key
+	private LinkedHashMap<Object,ModelEvent> pending = new LinkedHashMap<>();
+	private boolean scheduled = false;
+	private boolean shutdown = false;
+	private long mergedCount = 0;
+	
+	
+	ModelEventDispatcher(Consumer<ModelEvent> sink) {
+		this.sink = sink;
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "AutoAnnotate Model Events");
+			thread.setDaemon(true);
+			dispatchThread = thread;
+			return thread;
+		});
+	}
+	
+	
+	void post(ModelEvent event) {
+		synchronized(this) {
+			if(shutdown)
+				return;
+			
+			if(event instanceof ClustersChanged) {
+				for(var entry : splitByAnnotationSet((ClustersChanged)event).entrySet()) {
+					Object key = List.of(ClustersChanged.class, entry.getKey());
+					ClustersChanged prev = (ClustersChanged) pending.get(key);
+					if(prev != null)
+						mergedCount++;
+					pending.put(key, prev == null ? entry.getValue() : merge(prev, entry.getValue()));
+				}
+			} else if(event instanceof ClustersSelected) {
+				var selected = (ClustersSelected) event;
+				Object key = List.of(ClustersSelected.class, selected.getAnnotationSet());
+				ClustersSelected prev = (ClustersSelected) pending.get(key);
+				if(prev != null)
+					mergedCount++;
+				pending.put(key, prev == null ? selected : merge(prev, selected));
+			} else {
+				pending.put(new Object(), event);
+			}
+			
+			if(!scheduled) {
+				scheduled = true;
+				executor.execute(this::drain);
+			}
+			
+			// back pressure
+			if(SwingUtilities.isEventDispatchThread() || Thread.currentThread() == dispatchThread)
+				return;
+			while(pending.size() > MAX_PENDING && !shutdown) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+	
+	
+	private void drain() {
+		while(true) {
+			List<ModelEvent> events;
+			synchronized(this) {
+				if(pending.isEmpty() || shutdown) {
+					scheduled = false;
+					return;
+				}
+				events = new ArrayList<>(pending.values());
+				pending = new LinkedHashMap<>();
+				notifyAll();
+			}
+			for(ModelEvent event : events) {
+				try {
+					sink.accept(event);
+				} catch(Exception e) {
+					logger.error("Exception thrown while firing " + event, e);
+				}
+			}
+		}
+	}
+	
+	
+	/**
+	 * The number of events waiting to be fired.
+	 */
+	synchronized int getQueueDepth() {
+		return pending.size();
+	}
+	
+	/**
+	 * The number of times a posted event was merged into a pending event.
+	 */
+	synchronized long getMergedCount() {
+		return mergedCount;
+	}
+	
+	void shutdown() {
+		synchronized(this) {
+			shutdown = true;
+			pending.clear();
+			notifyAll();
+		}
+		executor.shutdown();
+	}
+	
+	
+	private static Map<AnnotationSet,ClustersChanged> splitByAnnotationSet(ClustersChanged event) {
+		Set<Cluster> clusters = event.getClusters();
+		if(clusters.isEmpty())
+			return Map.of();
+		
+		AnnotationSet first = clusters.iterator().next().getParent();
+		if(clusters.stream().allMatch(c -> c.getParent() == first))
+			return Map.of(first, event);
+		
+		Map<AnnotationSet,Set<Cluster>> grouped = new HashMap<>();
+		for(Cluster cluster : clusters) {
+			grouped.computeIfAbsent(cluster.getParent(), k -> new HashSet<>()).add(cluster);
+		}
+		Map<AnnotationSet,ClustersChanged> events = new HashMap<>();
+		grouped.forEach((as, cs) -> events.put(as, new ClustersChanged(cs, event.getVisibilityChanged())));
+		return events;
+	}
+	
+	
+	static ClustersChanged merge(ClustersChanged first, ClustersChanged second) {
+		Set<Cluster> clusters = new HashSet<>(first.getClusters());
+		clusters.addAll(second.getClusters());
+		return new ClustersChanged(clusters, first.getVisibilityChanged() || second.getVisibilityChanged());
+	}
+	
+	
+	static ClustersSelected merge(ClustersSelected first, ClustersSelected second) {
+		if(!second.isIncremental())
+			return second; // last wins
+		
+		Set<Cluster> selected = new LinkedHashSet<>(first.getClusters());
+		selected.removeAll(second.getDeselectedClusters());
+		selected.addAll(second.getClusters());
+		
+		if(!first.isIncremental())
+			return new ClustersSelected(second.getAnnotationSet(), selected);
+		
+		Set<Cluster> deselected = new LinkedHashSet<>(first.getDeselectedClusters());
+		deselected.removeAll(second.getClusters());
+		deselected.addAll(second.getDeselectedClusters());
+		
+		return new ClustersSelected(second.getAnnotationSet(), selected, deselected);
+	}
+	
+}
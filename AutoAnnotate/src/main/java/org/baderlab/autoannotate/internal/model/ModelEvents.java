@@ -1,6 +1,7 @@
 package org.baderlab.autoannotate.internal.model;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.Set;
 
@@ -172,20 +173,51 @@ public class ModelEvents {
 	
 	public static class ClustersSelected implements ModelEvent {
 		private final Collection<Cluster> clusters;
+		private final Collection<Cluster> deselected;
 		private final AnnotationSet annotationSet;
+		private final boolean incremental;
+		
+		/**
+		 * The given clusters are selected, all other clusters in the annotation set are not.
+		 */
 		public ClustersSelected(AnnotationSet annotationSet, Collection<Cluster> clusters) {
 			this.annotationSet = annotationSet;
 			this.clusters = clusters;
+			this.deselected = Collections.emptySet();
+			this.incremental = false;
 		}
+		/**
+		 * Only the clusters whose selection state changed, all other clusters are unaffected.
+		 */
+		public ClustersSelected(AnnotationSet annotationSet, Collection<Cluster> selected, Collection<Cluster> deselected) {
+			this.annotationSet = annotationSet;
+			this.clusters = selected;
+			this.deselected = deselected;
+			this.incremental = true;
+		}
+		/**
+		 * If {@link #isIncremental()} then these are the newly selected clusters,
+		 * otherwise this is all the selected clusters.
+		 */
 		public Collection<Cluster> getClusters() {
 			return clusters;
 		}
+		/**
+		 * Clusters that were deselected, always empty if not {@link #isIncremental()}.
+		 */
+		public Collection<Cluster> getDeselectedClusters() {
+			return deselected;
+		}
+		public boolean isIncremental() {
+			return incremental;
+		}
 		public AnnotationSet getAnnotationSet() {
 			return annotationSet;
 		}
 		@Override
 		public String toString() {
-			return "ClustersSelected [clusters(" + clusters.size() + ")=" + clusters + ", annotationSet=" + annotationSet + "]";
+			return "ClustersSelected [clusters(" + clusters.size() + ")=" + clusters + ", deselected(" + deselected.size() + ")=" + deselected 
+					+ ", incremental=" + incremental + ", annotationSet=" + annotationSet + "]";
 		}
 		
 	}
@@ -13,8 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import org.baderlab.autoannotate.internal.model.ModelEvents.ModelEvent;
 import org.baderlab.autoannotate.internal.model.SafeRunner.EventType;
@@ -28,10 +27,15 @@ import org.cytoscape.group.events.GroupAboutToCollapseListener;
 import org.cytoscape.group.events.GroupCollapsedEvent;
 import org.cytoscape.group.events.GroupCollapsedListener;
 import org.cytoscape.model.CyDisposable;
+import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.events.AboutToRemoveEdgesEvent;
+import org.cytoscape.model.events.AboutToRemoveEdgesListener;
 import org.cytoscape.model.events.AboutToRemoveNodesEvent;
 import org.cytoscape.model.events.AboutToRemoveNodesListener;
+import org.cytoscape.model.events.AddedEdgesEvent;
+import org.cytoscape.model.events.AddedEdgesListener;
 import org.cytoscape.model.events.SelectedNodesAndEdgesEvent;
 import org.cytoscape.model.events.SelectedNodesAndEdgesListener;
 import org.cytoscape.view.model.CyNetworkView;
@@ -50,24 +54,25 @@ import com.google.inject.Singleton;
 public class ModelManager implements 
 		CyDisposable, SetCurrentNetworkViewListener, NetworkViewAboutToBeDestroyedListener,
 		ViewChangedListener, AboutToRemoveNodesListener, SelectedNodesAndEdgesListener, 
-		GroupAboutToCollapseListener, GroupCollapsedListener {
+		GroupAboutToCollapseListener, GroupCollapsedListener, AddedEdgesListener, AboutToRemoveEdgesListener {
 
 	@Inject private CyApplicationManager applicationManager;
 	@Inject private CyGroupManager groupManager;
 	@Inject private EventBus eventBus;
 	
-	private ExecutorService asyncEventService;
+	private final ModelEventDispatcher asyncEventDispatcher;
 	private Map<CyNetworkView, NetworkViewSet> networkViews = new HashMap<>();
 	
 	private final SafeRunnerImpl safeRunner = new SafeRunnerImpl();
+	private final SelectionTracker selectionTracker = new SelectionTracker();
 	
 	public ModelManager() {
-		asyncEventService = Executors.newSingleThreadExecutor();
+		asyncEventDispatcher = new ModelEventDispatcher(this::postEvent);
 	}
 	
 	@Override
 	public void dispose() {
-		asyncEventService.shutdown();
+		asyncEventDispatcher.shutdown();
 	}
 	
 	/**
@@ -109,13 +114,26 @@ public class ModelManager implements
 		eventBus.post(event);
 	}
 	
+	/**
+	 * Returns immediately and fires the event on a separate thread. 
+	 * ClustersChanged and ClustersSelected events may be merged with other pending events of the same type.
+	 */
 	private void postEventOffEDT(ModelEvent event) {
-//		if(SwingUtilities.isEventDispatchThread()) {
-			asyncEventService.execute(() -> postEvent(event)); // returns immediately and fires event on a separate thread
-//		}
-//		else {
-//			postEvent(event); // fire on current thread
-//		}
+		asyncEventDispatcher.post(event);
+	}
+	
+	/**
+	 * The number of events waiting to be fired on the event thread.
+	 */
+	public int getPendingEventCount() {
+		return asyncEventDispatcher.getQueueDepth();
+	}
+	
+	/**
+	 * The number of events that were not fired because they were merged with another pending event.
+	 */
+	public long getMergedEventCount() {
+		return asyncEventDispatcher.getMergedCount();
 	}
 	
 	public boolean isNetworkViewSetSelected(NetworkViewSet networkViewSet) {
@@ -144,54 +162,58 @@ public class ModelManager implements
 		CyNetworkView networkView = e.getNetworkView();
 		NetworkViewSet networkViewSet = networkViews.remove(networkView);
 		if(networkViewSet != null) {
+			selectionTracker.reset();
 			postEvent(new ModelEvents.NetworkViewSetDeleted(networkViewSet));
 		}
 	}
 	
 	/**
 	 * Handle nodes being moved around.
+	 * The cluster geometry is updated from the payload for every annotation set of the view, 
+	 * even when events are being ignored, but ClustersChanged is only fired for the active annotation set.
 	 */
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Override
 	public void handleEvent(ViewChangedEvent<?> e) {
-		if(safeRunner.shouldIgnore(EventType.VIEW_CHANGE)) {
-			return;
+		CyNetworkView networkView = e.getSource();
+		NetworkViewSet nvs;
+		synchronized (networkViews) {
+			nvs = networkViews.get(networkView);
 		}
+		if(nvs == null)
+			return;
 		
-		CyNetworkView networkView = e.getSource();
-		Optional<NetworkViewSet> optional = getActiveNetworkViewSet();
-		if(optional.isPresent()) {
-			NetworkViewSet nvs = optional.get();
-			if(networkView.equals(nvs.getNetworkView())) {
-				Set<Cluster> affectedClusters = new HashSet<>();
-				
-				Collection<?> payload = e.getPayloadCollection();
-				
-				for(ViewChangeRecord vcr: (Collection<ViewChangeRecord>)payload) {
-					if(!(vcr.getView().getModel() instanceof CyNode))
-						continue;
+		boolean fireEvent = !safeRunner.shouldIgnore(EventType.VIEW_CHANGE) && nvs.isSelected();
+		Optional<AnnotationSet> active = fireEvent ? nvs.getActiveAnnotationSet() : Optional.empty();
+		List<AnnotationSet> annotationSets = nvs.getAnnotationSets();
+		Set<Cluster> affectedClusters = new HashSet<>();
 		
-					var prop = vcr.getVisualProperty();
-					if(prop.equals(NODE_X_LOCATION) || prop.equals(NODE_Y_LOCATION) || prop.equals(NODE_VISIBLE)) {
+		Collection<?> payload = e.getPayloadCollection();
 		
-						View<CyNode> nodeView = vcr.getView();
-						CyNode node = nodeView.getModel();
-						
-						Optional<AnnotationSet> active = nvs.getActiveAnnotationSet();
-						if(active.isPresent()) {
-							for(Cluster cluster : active.get().getClusters()) {
-								if(cluster.contains(node)) {
-									affectedClusters.add(cluster);
-								}
-							}
-						}
+		for(ViewChangeRecord vcr: (Collection<ViewChangeRecord>)payload) {
+			if(!(vcr.getView().getModel() instanceof CyNode))
+				continue;
+			
+			var prop = vcr.getVisualProperty();
+			if(ClusterGeometry.isTracked(prop)) {
+				View<CyNode> nodeView = vcr.getView();
+				CyNode node = nodeView.getModel();
+				nvs.getViewSnapshot().update(node, prop, vcr.getValue());
+				
+				for(AnnotationSet as : annotationSets) {
+					for(Cluster cluster : as.getClusters(node)) {
+						cluster.updateGeometry(node, prop, vcr.getValue());
 					}
 				}
 				
-				if(!affectedClusters.isEmpty())
-					postEventOffEDT(new ModelEvents.ClustersChanged(affectedClusters));
+				if(active.isPresent() && (prop.equals(NODE_X_LOCATION) || prop.equals(NODE_Y_LOCATION) || prop.equals(NODE_VISIBLE))) {
+					affectedClusters.addAll(active.get().getClusters(node));
+				}
 			}
 		}
+		
+		if(!affectedClusters.isEmpty())
+			postEventOffEDT(new ModelEvents.ClustersChanged(affectedClusters));
 	}
 
 	
@@ -201,10 +223,47 @@ public class ModelManager implements
 		var nodes = e.getNodes();
 		
 		getNetworkViewSets().stream()
+			.filter(nvs -> nvs.getNetwork().equals(net))
+			.forEach(nvs -> {
+				nvs.getViewSnapshot().invalidate(nodes);
+				for(AnnotationSet as : nvs.getAnnotationSets()) {
+					as.removeNodes(nodes); // uses the node index to find affected clusters
+				}
+				nvs.getNodeIndex().release(nodes);
+			});
+	}
+	
+	
+	@Override
+	public void handleEvent(AddedEdgesEvent e) {
+		invalidateEdges(e.getSource(), e.getPayloadCollection());
+	}
+	
+	@Override
+	public void handleEvent(AboutToRemoveEdgesEvent e) {
+		invalidateEdges(e.getSource(), e.getEdges());
+	}
+	
+	/**
+	 * Discards the cached induced edges of the clusters that contain the source node of one of the edges.
+	 * An edge can only be induced by a cluster that contains both its endpoints so checking the source is enough.
+	 */
+	private void invalidateEdges(CyNetwork net, Collection<CyEdge> edges) {
+		List<AnnotationSet> annotationSets = getNetworkViewSets().stream()
 			.filter(nvs -> nvs.getNetwork().equals(net))
 			.flatMap(nvs -> nvs.getAnnotationSets().stream())
-			.flatMap(as -> as.getClusters().stream())
-			.forEach(c -> c.removeNodes(nodes));
+			.collect(Collectors.toList());
+		
+		if(annotationSets.isEmpty())
+			return;
+		
+		for(CyEdge edge : edges) {
+			for(AnnotationSet as : annotationSets) {
+				for(Cluster cluster : as.getClusters(edge.getSource())) {
+					cluster.invalidateEdges();
+				}
+			}
+		}
 	}
 	
 	
@@ -221,19 +280,8 @@ public class ModelManager implements
 			CyNetwork activeNetwork = annotationSet.getParent().getNetwork();
 			
 			if(activeNetwork.equals(e.getNetwork())) {
-				List<Cluster> selectedClusters = new ArrayList<>();
-				
-				Collection<CyNode> selectedNodes = e.getSelectedNodes();
-				if(!selectedNodes.isEmpty()) {
-					for(Cluster cluster : annotationSet.getClusters()) {
-						if(selectedNodes.containsAll(cluster.getNodes())) {
-							selectedClusters.add(cluster);
-						}
-					}
-				}
-				
-				// Fire event even when selectedClusters is empty
-				postEventOffEDT(new ModelEvents.ClustersSelected(annotationSet, selectedClusters));
+				// Only fires if the selection state of a cluster actually changed
+				selectionTracker.update(annotationSet, e.getSelectedNodes()).ifPresent(this::postEventOffEDT);
 			}
 		}
 	}
@@ -278,7 +326,12 @@ public class ModelManager implements
 				Optional<AnnotationSet> active = nvs.getActiveAnnotationSet();
 				if(active.isPresent()) {
 					AnnotationSet as = active.get();
-					for(Cluster cluster : as.getClusters()) {
+					// Only clusters that contain the group node or one of its members can match
+					Set<Cluster> candidates = new HashSet<>(as.getClusters(group.getGroupNode()));
+					if(!groupNodes.isEmpty())
+						candidates.addAll(as.getClusters(groupNodes.iterator().next()));
+					
+					for(Cluster cluster : candidates) {
 						Set<CyNode> clusterNodes = cluster.getNodes();
 						if(collapse) {
 							if(clusterNodes.equals(groupNodes)) {
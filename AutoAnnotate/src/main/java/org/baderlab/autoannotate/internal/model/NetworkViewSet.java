@@ -22,11 +22,16 @@ public class NetworkViewSet {
 	private final List<AnnotationSet> annotationSets;
 	private Optional<AnnotationSet> activeSet = Optional.empty();
 	
+	// Shared by the clusters of all the annotation sets.
+	private final NodeIndex nodeIndex = new NodeIndex();
+	private final ViewSnapshot viewSnapshot;
+	
 	
 	NetworkViewSet(ModelManager parent, CyNetworkView networkView) {
 		this.parent = parent;
 		this.networkView = networkView;
 		this.annotationSets = new ArrayList<>();
+		this.viewSnapshot = new ViewSnapshot(networkView, nodeIndex);
 	}
 	
 	
@@ -136,6 +141,17 @@ public class NetworkViewSet {
 		parent.postEvent(new ModelEvents.NetworkViewSetChanged(this, Type.ANNOTATION_SET_ORDER));
 	}
 	
+	NodeIndex getNodeIndex() {
+		return nodeIndex;
+	}
+	
+	/**
+	 * The node positions, sizes and visibility of the network view, shared by all the clusters.
+	 */
+	public ViewSnapshot getViewSnapshot() {
+		return viewSnapshot;
+	}
+	
 	public ModelManager getParent() {
 		return parent;
 	}
@@ -0,0 +1,74 @@
+package org.baderlab.autoannotate.internal.model;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.cytoscape.model.CyNode;
+
+/**
+ * Assigns a dense int id to each node of a network, ids are assigned the first time a node is seen
+ * and are never reused. This allows clusters to store their nodes as sorted int arrays
+ * that all share the same CyNode lookup table, and per-node data to be kept in arrays indexed by id.
+ * Nodes removed from the network are released so the index doesn't keep them alive, their
+ * ids are not handed out again so that a stale id can never refer to a different node.
+ *
+ * <br><br>
+ * Thread safe.
+ */
+class NodeIndex {
+	
+	private final ConcurrentHashMap<CyNode,Integer> ids = new ConcurrentHashMap<>();
+	private volatile CyNode[] nodes = new CyNode[64];
+	private int size = 0;
+	
+	
+	/**
+	 * Returns the id of the node, assigning a new one if necessary.
+	 */
+	int getOrAssign(CyNode node) {
+		Integer id = ids.get(node);
+		if(id != null)
+			return id;
+		
+		synchronized(this) {
+			id = ids.get(node);
+			if(id != null)
+				return id;
+			
+			if(size == nodes.length)
+				nodes = Arrays.copyOf(nodes, size * 2);
+			
+			int newId = size++;
+			nodes[newId] = node; // must be set before the id is published
+			ids.put(node, newId);
+			return newId;
+		}
+	}
+	
+	/**
+	 * Returns the id of the node or -1 if the node has never been assigned an id.
+	 */
+	int getId(Object node) {
+		if(node == null)
+			return -1;
+		Integer id = ids.get(node);
+		return id == null ? -1 : id;
+	}
+	
+	CyNode getNode(int id) {
+		return nodes[id];
+	}
+	
+	/**
+	 * Forgets the given nodes, called after the nodes have been removed from the network and from all the clusters.
+	 */
+	synchronized void release(Collection<CyNode> removed) {
+		for(CyNode node : removed) {
+			Integer id = ids.remove(node);
+			if(id != null)
+				nodes[id] = null;
+		}
+	}
+	
+}
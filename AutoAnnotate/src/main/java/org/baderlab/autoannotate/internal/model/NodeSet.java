@@ -0,0 +1,180 @@
+package org.baderlab.autoannotate.internal.model;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.cytoscape.model.CyNode;
+
+/**
+ * Immutable set of nodes stored as a sorted array of ids from a {@link NodeIndex}.
+ * Uses 4 bytes per node instead of a HashSet entry, set operations between
+ * two NodeSets that share the same index are done by merging the sorted arrays.
+ *
+ * <br><br>
+ * Thread safe.
+ */
+public final class NodeSet extends AbstractSet<CyNode> {
+	
+	private final NodeIndex index;
+	private final int[] ids;
+	
+	
+	private NodeSet(NodeIndex index, int[] ids) {
+		this.index = index;
+		this.ids = ids;
+	}
+	
+	/**
+	 * Returns a NodeSet containing the given nodes, if the collection is already a
+	 * NodeSet over the same index then it is returned as is.
+	 */
+	/**
+	 * Returns the sorted ids of the nodes, the array must not be modified.
+	 */
+	int[] getIds() {
+		return ids;
+	}
+	
+	NodeIndex getIndex() {
+		return index;
+	}
+	
+	static NodeSet of(NodeIndex index, Collection<CyNode> nodes) {
+		if(nodes instanceof NodeSet && ((NodeSet)nodes).index == index)
+			return (NodeSet) nodes;
+		
+		int[] ids = new int[nodes.size()];
+		int n = 0;
+		for(CyNode node : nodes) {
+			if(node != null)
+				ids[n++] = index.getOrAssign(node);
+		}
+		return new NodeSet(index, sortedUnique(ids, n));
+	}
+	
+	private static int[] sortedUnique(int[] ids, int n) {
+		Arrays.sort(ids, 0, n);
+		int u = 0;
+		for(int i = 0; i < n; i++) {
+			if(u == 0 || ids[i] != ids[u-1])
+				ids[u++] = ids[i];
+		}
+		return u == ids.length ? ids : Arrays.copyOf(ids, u);
+	}
+	
+	private NodeSet toNodeSet(Collection<?> other) {
+		if(other instanceof NodeSet && ((NodeSet)other).index == index)
+			return (NodeSet) other;
+		
+		int[] otherIds = new int[other.size()];
+		int n = 0;
+		for(Object node : other) {
+			int id = index.getId(node);
+			if(id >= 0)
+				otherIds[n++] = id;
+		}
+		return new NodeSet(index, sortedUnique(otherIds, n));
+	}
+	
+	
+	@Override
+	public boolean contains(Object node) {
+		int id = index.getId(node);
+		return id >= 0 && Arrays.binarySearch(ids, id) >= 0;
+	}
+	
+	@Override
+	public boolean containsAll(Collection<?> other) {
+		if(other instanceof NodeSet && ((NodeSet)other).index == index) {
+			int[] b = ((NodeSet)other).ids;
+			if(b.length > ids.length)
+				return false;
+			int i = 0;
+			for(int id : b) {
+				while(i < ids.length && ids[i] < id)
+					i++;
+				if(i == ids.length || ids[i] != id)
+					return false;
+			}
+			return true;
+		}
+		return super.containsAll(other);
+	}
+	
+	@Override
+	public int size() {
+		return ids.length;
+	}
+	
+	@Override
+	public boolean isEmpty() {
+		return ids.length == 0;
+	}
+	
+	@Override
+	public Iterator<CyNode> iterator() {
+		return new Iterator<CyNode>() {
+			int i = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return i < ids.length;
+			}
+			
+			@Override
+			public CyNode next() {
+				if(i >= ids.length)
+					throw new NoSuchElementException();
+				return index.getNode(ids[i++]);
+			}
+		};
+	}
+	
+	
+	/**
+	 * Returns a new NodeSet containing the nodes of both sets.
+	 */
+	public NodeSet union(Collection<CyNode> other) {
+		int[] b = NodeSet.of(index, other).ids;
+		int[] result = new int[ids.length + b.length];
+		int i = 0, j = 0, n = 0;
+		while(i < ids.length && j < b.length) {
+			if(ids[i] < b[j])
+				result[n++] = ids[i++];
+			else if(ids[i] > b[j])
+				result[n++] = b[j++];
+			else {
+				result[n++] = ids[i++];
+				j++;
+			}
+		}
+		while(i < ids.length)
+			result[n++] = ids[i++];
+		while(j < b.length)
+			result[n++] = b[j++];
+		return new NodeSet(index, n == result.length ? result : Arrays.copyOf(result, n));
+	}
+	
+	/**
+	 * Returns a new NodeSet containing the nodes of this set that are not in the given collection.
+	 * Returns this set if nothing would be removed.
+	 */
+	public NodeSet difference(Collection<?> other) {
+		int[] b = toNodeSet(other).ids;
+		int[] result = new int[ids.length];
+		int i = 0, j = 0, n = 0;
+		while(i < ids.length) {
+			while(j < b.length && b[j] < ids[i])
+				j++;
+			if(j < b.length && b[j] == ids[i])
+				i++;
+			else
+				result[n++] = ids[i++];
+		}
+		return n == ids.length ? this : new NodeSet(index, Arrays.copyOf(result, n));
+	}
+	
+}
@@ -0,0 +1,136 @@
+package org.baderlab.autoannotate.internal.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.cytoscape.model.CyNode;
+
+/**
+ * Keeps a count of the selected nodes in each cluster of the active annotation set so that
+ * fully selected clusters can be found from the nodes whose selection state changed, instead
+ * of testing every cluster against the whole selection.
+ *
+ * <br><br>
+ * Thread safe.
+ */
+class SelectionTracker {
+	
+	private AnnotationSet annotationSet = null;
+	private int membershipVersion;
+	
+	private Set<CyNode> selectedNodes = Set.of();
+	private final Map<Cluster,Integer> selectedCounts = new HashMap<>();
+	private final Set<Cluster> selectedClusters = new HashSet<>();
+	
+	
+	/**
+	 * Updates the counts with the current node selection and returns an event containing
+	 * the clusters that were selected or deselected, or an empty Optional if none were.
+	 *
+	 * If the annotation set is not the same as the last time this method was called then
+	 * the counts are recomputed and the returned event contains all the selected clusters.
+	 */
+	synchronized Optional<ModelEvents.ClustersSelected> update(AnnotationSet annotationSet, Collection<CyNode> selection) {
+		Set<CyNode> newSelection = selection instanceof Set ? (Set<CyNode>) selection : new HashSet<>(selection);
+		
+		if(annotationSet != this.annotationSet) {
+			this.annotationSet = annotationSet;
+			recompute(newSelection);
+			return Optional.of(new ModelEvents.ClustersSelected(annotationSet, Set.copyOf(selectedClusters)));
+		}
+		
+		List<Cluster> selected = new ArrayList<>();
+		List<Cluster> deselected = new ArrayList<>();
+		
+		if(membershipVersion != annotationSet.getMembershipVersion()) {
+			// Clusters were edited, this is rare compared to selection changes
+			Set<Cluster> before = new HashSet<>(selectedClusters);
+			recompute(newSelection);
+			for(Cluster cluster : selectedClusters) {
+				if(!before.contains(cluster))
+					selected.add(cluster);
+			}
+			Set<Cluster> clusters = annotationSet.getClusters();
+			for(Cluster cluster : before) {
+				if(!selectedClusters.contains(cluster) && clusters.contains(cluster)) // ignore deleted clusters
+					deselected.add(cluster);
+			}
+		} else {
+			// The state before any changes, only for the clusters that were touched
+			Map<Cluster,Boolean> touched = new IdentityHashMap<>();
+			for(CyNode node : newSelection) {
+				if(!selectedNodes.contains(node))
+					adjust(node, 1, touched);
+			}
+			for(CyNode node : selectedNodes) {
+				if(!newSelection.contains(node))
+					adjust(node, -1, touched);
+			}
+			selectedNodes = newSelection;
+			
+			touched.forEach((cluster, wasSelected) -> {
+				boolean isSelected = selectedClusters.contains(cluster);
+				if(isSelected && !wasSelected)
+					selected.add(cluster);
+				else if(!isSelected && wasSelected)
+					deselected.add(cluster);
+			});
+		}
+		
+		if(selected.isEmpty() && deselected.isEmpty())
+			return Optional.empty();
+		return Optional.of(new ModelEvents.ClustersSelected(annotationSet, selected, deselected));
+	}
+	
+	
+	private void adjust(CyNode node, int delta, Map<Cluster,Boolean> touched) {
+		for(Cluster cluster : annotationSet.getClusters(node)) {
+			touched.putIfAbsent(cluster, selectedClusters.contains(cluster));
+			int count = selectedCounts.merge(cluster, delta, Integer::sum);
+			if(count == cluster.getNodeCount())
+				selectedClusters.add(cluster);
+			else
+				selectedClusters.remove(cluster);
+		}
+	}
+	
+	
+	private void recompute(Set<CyNode> selection) {
+		selectedNodes = selection;
+		selectedCounts.clear();
+		selectedClusters.clear();
+		membershipVersion = annotationSet.getMembershipVersion();
+		
+		if(selection.isEmpty())
+			return;
+		
+		for(CyNode node : selection) {
+			for(Cluster cluster : annotationSet.getClusters(node)) {
+				selectedCounts.merge(cluster, 1, Integer::sum);
+			}
+		}
+		for(var entry : selectedCounts.entrySet()) {
+			Cluster cluster = entry.getKey();
+			if(entry.getValue() == cluster.getNodeCount())
+				selectedClusters.add(cluster);
+		}
+	}
+	
+	
+	/**
+	 * Forget the current state, the next call to update() will recompute the counts.
+	 */
+	synchronized void reset() {
+		annotationSet = null;
+		selectedNodes = Set.of();
+		selectedCounts.clear();
+		selectedClusters.clear();
+	}
+}
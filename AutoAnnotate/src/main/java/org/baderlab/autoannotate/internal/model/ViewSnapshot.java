@@ -0,0 +1,244 @@
+package org.baderlab.autoannotate.internal.model;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_HEIGHT;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_SIZE;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_VISIBLE;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_WIDTH;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_X_LOCATION;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_Y_LOCATION;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+
+/**
+ * The position, size and visibility of every node in a network view, stored in primitive arrays
+ * indexed by the NodeIndex of the NetworkViewSet.
+ *
+ * All the node views are read in bulk the first time the snapshot is used, after that the values
+ * are kept up to date by the ModelManager using the ViewChangedEvent payloads. Values that
+ * can't be taken from a payload are dropped and read again from the node view when next needed.
+ * This way the renderer, layouts, thumbnails and summary network don't need to look up
+ * visual properties one node at a time.
+ *
+ * <br><br>
+ * Thread safe.
+ */
+public class ViewSnapshot {
+	
+	private static final byte UNKNOWN = 0;
+	private static final byte VISIBLE = 1;
+	private static final byte HIDDEN  = 2;
+	private static final byte NO_VIEW = 3;
+	
+	private final CyNetworkView networkView;
+	private final NodeIndex nodeIndex;
+	
+	private boolean loaded = false;
+	private double[] x = new double[0];
+	private double[] y = new double[0];
+	private double[] size = new double[0];
+	private byte[] state = new byte[0];
+	
+	
+	ViewSnapshot(CyNetworkView networkView, NodeIndex nodeIndex) {
+		this.networkView = networkView;
+		this.nodeIndex = nodeIndex;
+	}
+	
+	
+	private void ensureLoaded() {
+		if(loaded)
+			return;
+		loaded = true;
+		var nodeViews = networkView.getNodeViews();
+		if(nodeViews == null)
+			return;
+		for(var nodeView : nodeViews) {
+			int id = nodeIndex.getOrAssign(nodeView.getModel());
+			ensureCapacity(id);
+			read(id, nodeView);
+		}
+	}
+	
+	private void ensureCapacity(int id) {
+		if(id >= state.length) {
+			int n = Math.max(id + 1, state.length * 2);
+			x = Arrays.copyOf(x, n);
+			y = Arrays.copyOf(y, n);
+			size = Arrays.copyOf(size, n);
+			state = Arrays.copyOf(state, n);
+		}
+	}
+	
+	private void read(int id, View<CyNode> nodeView) {
+		if(nodeView == null) {
+			state[id] = NO_VIEW;
+			return;
+		}
+		x[id] = getValue(nodeView.getVisualProperty(NODE_X_LOCATION));
+		y[id] = getValue(nodeView.getVisualProperty(NODE_Y_LOCATION));
+		size[id] = getValue(nodeView.getVisualProperty(NODE_WIDTH));
+		state[id] = Boolean.FALSE.equals(nodeView.getVisualProperty(NODE_VISIBLE)) ? HIDDEN : VISIBLE;
+	}
+	
+	private static double getValue(Double value) {
+		return value == null ? 0 : value;
+	}
+	
+	/**
+	 * Returns the array slot of the node, reading the node view if its values are not known.
+	 */
+	private int slot(CyNode node) {
+		ensureLoaded();
+		int id = nodeIndex.getOrAssign(node);
+		ensureCapacity(id);
+		if(state[id] == UNKNOWN)
+			read(id, networkView.getNodeView(node));
+		return id;
+	}
+	
+	
+	/**
+	 * Applies a visual property change from a ViewChangedEvent payload.
+	 */
+	synchronized void update(CyNode node, VisualProperty<?> vp, Object value) {
+		if(!loaded)
+			return;
+		int id = nodeIndex.getId(node);
+		if(id < 0 || id >= state.length || state[id] == UNKNOWN)
+			return; // will be read when needed
+		
+		if(state[id] == NO_VIEW) {
+			state[id] = UNKNOWN; // the node view has been created since
+		} else if(value == null || vp == NODE_SIZE || vp == NODE_HEIGHT) {
+			state[id] = UNKNOWN; // a bypass was cleared or the width depends on the node size lock
+		} else if(vp == NODE_VISIBLE) {
+			state[id] = Boolean.FALSE.equals(value) ? HIDDEN : VISIBLE;
+		} else if(value instanceof Number) {
+			double d = ((Number)value).doubleValue();
+			if(vp == NODE_X_LOCATION)
+				x[id] = d;
+			else if(vp == NODE_Y_LOCATION)
+				y[id] = d;
+			else if(vp == NODE_WIDTH)
+				size[id] = d;
+		} else {
+			state[id] = UNKNOWN; // unexpected value type
+		}
+	}
+	
+	
+	/**
+	 * Drops the values of the given nodes, they will be read again from the network view when next needed.
+	 */
+	synchronized void invalidate(Collection<CyNode> nodes) {
+		for(CyNode node : nodes) {
+			int id = nodeIndex.getId(node);
+			if(id >= 0 && id < state.length)
+				state[id] = UNKNOWN;
+		}
+	}
+	
+	
+	public synchronized boolean hasView(CyNode node) {
+		return state[slot(node)] != NO_VIEW;
+	}
+	
+	/**
+	 * Returns false only if the node has a view and the view is hidden, same as {@link org.baderlab.autoannotate.internal.util.HiddenTools#isHiddenNode(View)}.
+	 */
+	public synchronized boolean isVisible(CyNode node) {
+		return state[slot(node)] != HIDDEN;
+	}
+	
+	public synchronized double getX(CyNode node) {
+		return x[slot(node)];
+	}
+	
+	public synchronized double getY(CyNode node) {
+		return y[slot(node)];
+	}
+	
+	public synchronized double getSize(CyNode node) {
+		return size[slot(node)];
+	}
+	
+	
+	/**
+	 * Returns true if every node with a view is hidden.
+	 */
+	public synchronized boolean allHidden(Collection<CyNode> nodes) {
+		for(CyNode node : nodes) {
+			if(state[slot(node)] != HIDDEN)
+				return false;
+		}
+		return true;
+	}
+	
+	
+	/**
+	 * Same as {@link CoordinateData#forNodes(CyNetworkView, Collection, boolean)} but uses the snapshot.
+	 */
+	public synchronized CoordinateData getCoordinateData(Collection<CyNode> nodes, boolean includeHiddenNodes) {
+		int n = nodes.size();
+		CyNode[] ns = new CyNode[n];
+		double[] xs = new double[n];
+		double[] ys = new double[n];
+		double[] rs = new double[n];
+		
+		double xmin = 100000000, xmax = -100000000, ymin = 100000000, ymax = -100000000;
+		double sumX = 0, sumY = 0;
+		int count = 0;
+		
+		for(CyNode node : nodes) {
+			int id = slot(node);
+			byte s = state[id];
+			if(s == NO_VIEW || (s == HIDDEN && !includeHiddenNodes))
+				continue;
+			
+			ns[count] = node;
+			xs[count] = x[id];
+			ys[count] = y[id];
+			rs[count] = size[id];
+			count++;
+			
+			xmin = Math.min(xmin, x[id]);
+			xmax = Math.max(xmax, x[id]);
+			ymin = Math.min(ymin, y[id]);
+			ymax = Math.max(ymax, y[id]);
+			sumX += x[id];
+			sumY += y[id];
+		}
+		
+		if(count < n) {
+			ns = Arrays.copyOf(ns, count);
+			xs = Arrays.copyOf(xs, count);
+			ys = Arrays.copyOf(ys, count);
+			rs = Arrays.copyOf(rs, count);
+		}
+		return new CoordinateData(xmin, xmax, ymin, ymax, sumX, sumY, count, ns, xs, ys, rs);
+	}
+	
+	
+	/**
+	 * Copies the values for the given nodes into the arrays, used by ClusterGeometry to load in bulk.
+	 */
+	synchronized void read(CyNode[] nodes, double[] xs, double[] ys, double[] sizes, boolean[] visible, boolean[] present) {
+		for(int i = 0; i < nodes.length; i++) {
+			int id = slot(nodes[i]);
+			if(state[id] == NO_VIEW)
+				continue;
+			present[i] = true;
+			xs[i] = x[id];
+			ys[i] = y[id];
+			sizes[i] = size[id];
+			visible[i] = state[id] == VISIBLE;
+		}
+	}
+	
+}
@@ -0,0 +1,149 @@
+package org.baderlab.autoannotate.internal.model;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.EDGE_VISIBLE;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_VISIBLE;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.cytoscape.model.CyEdge;
+import org.cytoscape.model.CyIdentifiable;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.events.AboutToRemoveEdgesEvent;
+import org.cytoscape.model.events.AboutToRemoveEdgesListener;
+import org.cytoscape.model.events.AboutToRemoveNodesEvent;
+import org.cytoscape.model.events.AboutToRemoveNodesListener;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.View;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.model.events.NetworkViewAboutToBeDestroyedEvent;
+import org.cytoscape.view.model.events.NetworkViewAboutToBeDestroyedListener;
+import org.cytoscape.view.model.events.ViewChangeRecord;
+import org.cytoscape.view.model.events.ViewChangedEvent;
+import org.cytoscape.view.model.events.ViewChangedListener;
+
+import com.google.inject.Singleton;
+
+/**
+ * Keeps track of the hidden nodes and edges of network views so that checking if a
+ * network view has hidden elements doesn't require scanning all the node and edge views.
+ *
+ * A network view is scanned the first time it is queried, after that the hidden
+ * elements are updated from the NODE_VISIBLE and EDGE_VISIBLE records of ViewChangedEvents.
+ * Per-cluster hidden counts are maintained by the cluster geometry, see {@link Cluster#getHiddenNodeCount()}.
+ */
+@Singleton
+public class VisibilityTracker implements ViewChangedListener, NetworkViewAboutToBeDestroyedListener,
+		AboutToRemoveNodesListener, AboutToRemoveEdgesListener {
+	
+	private final Map<CyNetworkView,Hidden> views = new WeakHashMap<>();
+	
+	
+	private static class Hidden {
+		final Set<Long> nodes = new HashSet<>();
+		final Set<Long> edges = new HashSet<>();
+	}
+	
+	
+	private synchronized Hidden get(CyNetworkView netView) {
+		Hidden hidden = views.get(netView);
+		if(hidden == null) {
+			hidden = new Hidden();
+			for(var nv : netView.getNodeViews()) {
+				if(Boolean.FALSE.equals(nv.getVisualProperty(NODE_VISIBLE)))
+					hidden.nodes.add(nv.getModel().getSUID());
+			}
+			for(var ev : netView.getEdgeViews()) {
+				if(Boolean.FALSE.equals(ev.getVisualProperty(EDGE_VISIBLE)))
+					hidden.edges.add(ev.getModel().getSUID());
+			}
+			views.put(netView, hidden);
+		}
+		return hidden;
+	}
+	
+	
+	public synchronized int getHiddenNodeCount(CyNetworkView netView) {
+		return get(netView).nodes.size();
+	}
+	
+	public synchronized int getHiddenEdgeCount(CyNetworkView netView) {
+		return get(netView).edges.size();
+	}
+	
+	public boolean hasHiddenNodes(CyNetworkView netView) {
+		return getHiddenNodeCount(netView) > 0;
+	}
+	
+	public boolean hasHiddenEdges(CyNetworkView netView) {
+		return getHiddenEdgeCount(netView) > 0;
+	}
+	
+	public boolean hasHiddenNodesOrEdges(CyNetworkView netView) {
+		return hasHiddenNodes(netView) || hasHiddenEdges(netView);
+	}
+	
+	
+	@Override
+	public void handleEvent(ViewChangedEvent<?> e) {
+		synchronized(this) {
+			Hidden hidden = views.get(e.getSource());
+			if(hidden == null)
+				return; // not queried yet
+			
+			for(ViewChangeRecord<?> record : e.getPayloadCollection()) {
+				var vp = record.getVisualProperty();
+				var model = record.getView().getModel();
+				if(vp == NODE_VISIBLE && model instanceof CyNode) {
+					update(hidden.nodes, record.getView(), record.getValue(), NODE_VISIBLE);
+				} else if(vp == EDGE_VISIBLE && model instanceof CyEdge) {
+					update(hidden.edges, record.getView(), record.getValue(), EDGE_VISIBLE);
+				}
+			}
+		}
+	}
+	
+	private static void update(Set<Long> hidden, View<?> view, Object value, VisualProperty<Boolean> vp) {
+		if(!(value instanceof Boolean)) // the bypass was cleared, use the current value
+			value = view.getVisualProperty(vp);
+		
+		Long suid = ((CyIdentifiable)view.getModel()).getSUID();
+		if(Boolean.FALSE.equals(value))
+			hidden.add(suid);
+		else
+			hidden.remove(suid);
+	}
+	
+	
+	@Override
+	public void handleEvent(AboutToRemoveNodesEvent e) {
+		removeAll(e.getSource(), e.getNodes(), true);
+	}
+	
+	@Override
+	public void handleEvent(AboutToRemoveEdgesEvent e) {
+		removeAll(e.getSource(), e.getEdges(), false);
+	}
+	
+	private synchronized void removeAll(CyNetwork network, Collection<? extends CyIdentifiable> elements, boolean nodes) {
+		for(var entry : views.entrySet()) {
+			if(entry.getKey().getModel().equals(network)) {
+				Set<Long> hidden = nodes ? entry.getValue().nodes : entry.getValue().edges;
+				for(var element : elements) {
+					hidden.remove(element.getSUID());
+				}
+			}
+		}
+	}
+	
+	
+	@Override
+	public synchronized void handleEvent(NetworkViewAboutToBeDestroyedEvent e) {
+		views.remove(e.getNetworkView());
+	}
+	
+}
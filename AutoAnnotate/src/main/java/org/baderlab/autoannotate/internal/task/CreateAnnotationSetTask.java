@@ -2,7 +2,6 @@ package org.baderlab.autoannotate.internal.task;
 
 import static org.baderlab.autoannotate.internal.util.HiddenTools.getVisibleEdges;
 import static org.baderlab.autoannotate.internal.util.HiddenTools.getVisibleNodes;
-import static org.baderlab.autoannotate.internal.util.HiddenTools.hasHiddenNodesOrEdges;
 import static org.baderlab.autoannotate.internal.util.HiddenTools.isHiddenNode;
 
 import java.io.IOException;
@@ -36,10 +35,12 @@ import org.baderlab.autoannotate.internal.model.ClusterAlgorithm;
 import org.baderlab.autoannotate.internal.model.DisplayOptions.FillType;
 import org.baderlab.autoannotate.internal.model.ModelManager;
 import org.baderlab.autoannotate.internal.model.NetworkViewSet;
+import org.baderlab.autoannotate.internal.model.VisibilityTracker;
 import org.baderlab.autoannotate.internal.model.io.CreationParameter;
 import org.baderlab.autoannotate.internal.util.ResultObserver;
 import org.baderlab.autoannotate.internal.util.TaskTools;
 import org.cytoscape.application.CyUserLog;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNetworkManager;
@@ -76,6 +77,8 @@ public class CreateAnnotationSetTask extends AbstractTask implements ObservableT
 	
 	@Inject private SynchronousTaskManager<?> syncTaskManager;
 	@Inject private ModelManager modelManager;
+	@Inject private VisibilityTracker visibilityTracker;
+	@Inject private CyEventHelper eventHelper;
 	
 	private static final Logger logger = LoggerFactory.getLogger(CyUserLog.NAME);
 	
@@ -232,7 +235,8 @@ public class CreateAnnotationSetTask extends AbstractTask implements ObservableT
 		CyNetworkView networkView = params.getNetworkView();
 		CyNetwork network = networkView.getModel();
 		
-		final boolean hasHidden = hasHiddenNodesOrEdges(networkView);
+		eventHelper.flushPayloadEvents(); // the tracker is updated from view change events
+		final boolean hasHidden = visibilityTracker.hasHiddenNodesOrEdges(networkView);
 		if(hasHidden) {
 			Collection<CyNode> visibleNodes = getVisibleNodes(networkView);
 			Collection<CyEdge> visibleEdges = getVisibleEdges(networkView, visibleNodes);
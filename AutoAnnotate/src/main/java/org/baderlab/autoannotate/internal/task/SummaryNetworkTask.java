@@ -157,7 +157,7 @@ public class SummaryNetworkTask extends AbstractTask implements ObservableTask {
 		}
 		@Override
 		public CoordinateData getCoordinateData() {
-			return CoordinateData.forNodes(annotationSet.getParent().getNetworkView(), getNodes());
+			return annotationSet.getParent().getViewSnapshot().getCoordinateData(getNodes(), true);
 		}
 	}
 	
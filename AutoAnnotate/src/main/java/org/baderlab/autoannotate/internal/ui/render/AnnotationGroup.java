@@ -5,6 +5,7 @@ import java.awt.Paint;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,12 +20,52 @@ public class AnnotationGroup {
 	
 	private final ShapeAnnotation shape;
 	private final List<TextAnnotation> labels;
+	
+	// The values that were last applied to the annotations, null if not known (e.g. restored from a session).
+	// Cleared by the setters below because they change the annotations directly.
+	private ArgsShape shapeArgs;
+	private List<ArgsLabel> labelArgs;
 
 	
 	public AnnotationGroup(ShapeAnnotation shape, List<TextAnnotation> labels) {
+		this(shape, labels, null, null);
+	}
+	
+	/**
+	 * @param shapeArgs the values the shape was created or last updated with
+	 * @param labelArgs the values the labels were created or last updated with, must be the same size as labels
+	 */
+	public AnnotationGroup(ShapeAnnotation shape, List<TextAnnotation> labels, ArgsShape shapeArgs, List<ArgsLabel> labelArgs) {
 		this.shape = shape;
 		this.labels = labels;
+		this.shapeArgs = shapeArgs;
+		this.labelArgs = labelArgs != null && labelArgs.size() == labels.size() ? new ArrayList<>(labelArgs) : null;
+	}
+	
+	
+	/**
+	 * Updates the shape, only the values that differ from the last applied values are set.
+	 * @return true if the shape changed
+	 */
+	public boolean updateShape(ArgsShape args) {
+		boolean changed = args.updateAnnotation(shape, shapeArgs);
+		shapeArgs = args;
+		return changed;
 	}
+	
+	/**
+	 * Updates the label at the given index, only the values that differ from the last applied values are set.
+	 * @return true if the label changed
+	 */
+	public boolean updateLabel(int index, ArgsLabel args) {
+		boolean changed = args.updateAnnotation(labels.get(index), labelArgs == null ? null : labelArgs.get(index));
+		if(labelArgs == null) {
+			labelArgs = new ArrayList<>(Collections.nCopies(labels.size(), null));
+		}
+		labelArgs.set(index, args);
+		return changed;
+	}
+	
 
 	public void update() {
 		shape.update();
@@ -47,27 +88,33 @@ public class AnnotationGroup {
 	}
 	
 	public void setBorderWidth(double width) {
+		shapeArgs = null;
 		shape.setBorderWidth(width);
 	}
 	
 	public void setShapeType(ShapeType shapeType) {
+		shapeArgs = null;
 		shape.setShapeType(shapeType.shapeName());
 	}
 	
 	public void setBorderColor(Paint color) {
+		shapeArgs = null;
 		shape.setBorderColor(color);
 	}
 	
 	public void setFillColor(Paint color) {
+		shapeArgs = null;
 		shape.setFillColor(color);
 	}
 	
 	public void setShowShapes(boolean show, int opacity) {
+		shapeArgs = null;
 		shape.setFillOpacity(show ? opacity : 0);
 		shape.setBorderOpacity(show ? 100 : 0);
 	}
 	
 	public void setTextColor(Color color) {
+		labelArgs = null;
 		for(TextAnnotation text : labels) {
 			text.setTextColor(color);
 		}
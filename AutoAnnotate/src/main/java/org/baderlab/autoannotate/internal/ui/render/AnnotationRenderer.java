@@ -24,15 +24,14 @@ import org.baderlab.autoannotate.internal.model.DisplayOptions.FillType;
 import org.baderlab.autoannotate.internal.model.ModelEvents;
 import org.baderlab.autoannotate.internal.model.ModelManager;
 import org.baderlab.autoannotate.internal.model.NetworkViewSet;
+import org.baderlab.autoannotate.internal.ui.render.TaskQueue.Kind;
 import org.baderlab.autoannotate.internal.ui.view.action.SelectClusterTask;
-import org.baderlab.autoannotate.internal.util.TaskTools;
 import org.cytoscape.application.CyUserLog;
 import org.cytoscape.event.DebounceTimer;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.presentation.annotations.ShapeAnnotation;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.work.Task;
-import org.cytoscape.work.TaskIterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -97,17 +96,13 @@ public class AnnotationRenderer {
 	
 	@Subscribe
 	public void handle(ModelEvents.ModelLoaded event) {
-		TaskIterator tasks = new TaskIterator();
-		
 		for(var nvs : modelManager.getNetworkViewSets()) {
 			var asOpt = nvs.getActiveAnnotationSet();
 			if(asOpt.isPresent()) {
 				var as = asOpt.get();
-				tasks.append(visibilityTaskProvider.create(as));
+				taskQueue.submit(Kind.VISIBILITY, nvs, visibilityTaskProvider.create(as), true);
 			}
 		}
-		
-		taskQueue.submit(tasks, true);
 	}
 	
 	
@@ -121,20 +116,29 @@ public class AnnotationRenderer {
 		else
 			tasks.add(visibilityClearTaskProvider.create(networkViewSet));
 		
-		var eraseTask = eraseTaskProvider.create(clustersToErase);
-		if(eraseTask == null) // can happen in tests
-			return null;
-		eraseTask.setEraseAll(true);
-		tasks.add(eraseTask);
-		
 		if(selectedAnnotationSet.isPresent()) {
+			// Only erase the clusters that are not in the selected annotation set, 
+			// the annotations of the selected clusters are reconciled with their current state.
 			var clusters = selectedAnnotationSet.get().getClusters();
-			var drawTask = drawTaskProvider.create(clusters);
-			tasks.add(drawTask);
+			clustersToErase.removeAll(clusters);
+			
+			var eraseTask = eraseTaskProvider.create(clustersToErase);
+			var updateTask = updateTaskProvider.create(clusters);
+			if(eraseTask == null || updateTask == null) // can happen in tests
+				return null;
+			updateTask.setRemoveOrphans(true);
+			tasks.add(eraseTask);
+			tasks.add(updateTask);
+		} else {
+			var eraseTask = eraseTaskProvider.create(clustersToErase);
+			if(eraseTask == null) // can happen in tests
+				return null;
+			eraseTask.setEraseAll(true);
+			tasks.add(eraseTask);
 		}
 		
 		var networkView = networkViewSet.getNetworkView();
-		tasks.add(TaskTools.taskOf(networkView::updateView));
+		tasks.add(new UpdateNetworkViewTask(networkView));
 		
 		return tasks;
 	}
@@ -147,7 +151,7 @@ public class AnnotationRenderer {
 		String taskList = tasks.stream().map(task -> task.getClass().getSimpleName()).collect(Collectors.joining(", "));
 		logger.warn("AutoAnnotate: AnnotationRenderer.redrawAnnotations: sync=" + sync + ", taskList=" + taskList);
 		
-		taskQueue.submit(tasks, sync);
+		taskQueue.submit(Kind.REDRAW, networkViewSet, null, tasks, sync);
 	}
 	
 	public void redrawAnnotations(NetworkViewSet networkViewSet, Optional<AnnotationSet> selectedAnnotationSet) {
@@ -175,27 +179,33 @@ public class AnnotationRenderer {
 		}
 		
 		debouncer.debounce(clusters, () -> {
-			var tasks = new TaskIterator();
-					
 			var as = clusters.iterator().next().getParent();
 			if(updateVisibility.remove(as)) {
-				tasks.append(visibilityTaskProvider.create(as));
+				taskQueue.submit(Kind.VISIBILITY, as.getParent(), visibilityTaskProvider.create(as), true);
 			}
 			
-			tasks.append(updateTaskProvider.create(clusters));
-			tasks.append(new UpdateNetworkViewTask(netView));
-			
-			taskQueue.submit(tasks, true);
+			var tasks = List.of(updateTaskProvider.create(clusters), new UpdateNetworkViewTask(netView));
+			taskQueue.submit(Kind.UPDATE, as.getParent(), clusters, tasks, true);
 		});
 	}
 	
 	
+	/**
+	 * Reconciles the annotations of the given clusters with their current state, 
+	 * used by ViewportCuller when clusters move in or out of view.
+	 */
+	void updateAnnotations(Collection<Cluster> clusters) {
+		var first = clusters.iterator().next();
+		var tasks = List.of(updateTaskProvider.create(clusters), new UpdateNetworkViewTask(first.getNetworkView()));
+		taskQueue.submit(Kind.UPDATE, first.getParent().getParent(), clusters, tasks, true);
+	}
+	
+	
 	@Subscribe
 	public void handle(ModelEvents.ClusterRemoved event) {
 		Cluster cluster = event.getCluster();
-		TaskIterator tasks = new TaskIterator();
-		tasks.append(eraseTaskProvider.create(cluster));
-		taskQueue.submit(tasks, true);
+		EraseClustersTask task = eraseTaskProvider.create(cluster);
+		taskQueue.submit(Kind.OTHER, cluster.getParent().getParent(), task, true);
 	}
 	
 	
@@ -203,7 +213,7 @@ public class AnnotationRenderer {
 	public void handle(ModelEvents.ClusterAdded event) {
 		Cluster cluster = event.getCluster();
 		DrawClustersTask task = drawTaskProvider.create(cluster);
-		taskQueue.submit(task, true);
+		taskQueue.submit(Kind.OTHER, cluster.getParent().getParent(), task, true);
 	}
 	
 	
@@ -239,8 +249,8 @@ public class AnnotationRenderer {
 		case FONT_SCALE:
 		case FONT_SIZE:
 		case USE_CONSTANT_FONT_SIZE: // when changing font size the label position must also be recalculated
-			var task = updateTaskProvider.create(as.getClusters());
-			taskQueue.submit(task, true);
+			var clusters = as.getClusters();
+			taskQueue.submit(Kind.UPDATE, as.getParent(), clusters, List.of(updateTaskProvider.create(clusters)), true);
 			break;
 		case USE_WORD_WRAP: // when changing word wrap we need to re-create the label annotation objects
 		case WORD_WRAP_LENGTH:
@@ -275,8 +285,13 @@ public class AnnotationRenderer {
 	public void handle(ModelEvents.ClustersSelected event) {
 		AnnotationSet annotationSet = event.getAnnotationSet();
 		Collection<Cluster> select = event.getClusters();
-		Set<Cluster> deselect = new HashSet<>(annotationSet.getClusters());
-		deselect.removeAll(select);
+		Collection<Cluster> deselect;
+		if(event.isIncremental()) {
+			deselect = event.getDeselectedClusters();
+		} else {
+			deselect = new HashSet<>(annotationSet.getClusters());
+			deselect.removeAll(select);
+		}
 		
 		List<Cluster> clustersToRedraw = new ArrayList<>();
 		
@@ -291,10 +306,17 @@ public class AnnotationRenderer {
 			}
 		}
 		
-		selectedClusters = new HashSet<>(select);
+		if(event.isIncremental()) {
+			Set<Cluster> newSelected = new HashSet<>(selectedClusters);
+			newSelected.removeAll(deselect);
+			newSelected.addAll(select);
+			selectedClusters = newSelected;
+		} else {
+			selectedClusters = new HashSet<>(select);
+		}
 		
 		UpdateClustersTask task = updateTaskProvider.create(clustersToRedraw);
-		taskQueue.submit(task, true);
+		taskQueue.submit(Kind.SELECTION, annotationSet.getParent(), clustersToRedraw, List.of(task), true);
 	}
 
 	
@@ -349,6 +371,13 @@ public class AnnotationRenderer {
 	}
 	
 	
+	/**
+	 * Replaces the annotation group of a cluster that already has annotations, the shape must be the same.
+	 */
+	void replaceAnnotations(Cluster cluster, AnnotationGroup annotations) {
+		clusterAnnotations.replace(cluster, annotations);
+	}
+	
 	AnnotationGroup removeAnnotations(Cluster cluster) {
 		return clusterAnnotations.remove(cluster);
 	}
@@ -88,6 +88,49 @@ public class ArgsLabel extends ArgsBase<TextAnnotation> {
 		text.update();
 	}
 	
+	/**
+	 * Updates an existing annotation by comparing against the values that were last applied to it,
+	 * which avoids calling getters on the annotation. If last is null the annotation is read instead.
+	 * @return true if the annotation was changed
+	 */
+	public boolean updateAnnotation(TextAnnotation text, ArgsLabel last) {
+		if(last == null) {
+			updateAnnotation(text);
+			return true;
+		}
+		
+		boolean changed = false;
+		
+		if(x != last.x || y != last.y) {
+			text.moveAnnotation(new Point2D.Double(x, y));
+			changed = true;
+		}
+		if(zoom != last.zoom) {
+			text.setZoom(zoom);
+			changed = true;
+		}
+		if(!Objects.equals(label, last.label)) {
+			text.setText(label);
+			changed = true;
+		}
+		if(fontSize != last.fontSize) {
+			text.setFontSize(fontSize);
+			changed = true;
+		}
+		if(!Objects.equals(fontColor, last.fontColor)) {
+			text.setTextColor(fontColor);
+			changed = true;
+		}
+		if(!Objects.equals(name, last.name) || index != last.index || total != last.total) {
+			text.setName(getAnnotationName());
+			changed = true;
+		}
+		
+		if(changed)
+			text.update();
+		return changed;
+	}
+	
 	private String getAnnotationName() {
 		if(index > 0 && total > 0)
 			return ANNOTATION_NAME_PREFIX + " " + name + " (" + index + "/" + total + ")";
@@ -106,6 +149,7 @@ public class ArgsLabel extends ArgsBase<TextAnnotation> {
 			for(String labelPart : labelParts) {
 				ArgsLabel labelArgs = createFor(shapeArgs, cluster, labelPart, isSelected, selectedColor);
 				labelArgs.y -= adjust * (labelArgs.height * 1.1); // the 1.1 add some space between the labels
+				labelArgs.setIndexOfTotal(labels.size() + 1, labelParts.length);
 				adjust--;
 				labels.add(labelArgs);
 			}	
@@ -10,7 +10,6 @@ import org.baderlab.autoannotate.internal.model.AnnotationSet;
 import org.baderlab.autoannotate.internal.model.Cluster;
 import org.baderlab.autoannotate.internal.model.CoordinateData;
 import org.baderlab.autoannotate.internal.model.DisplayOptions;
-import org.cytoscape.model.CyNode;
 import org.cytoscape.view.presentation.annotations.Annotation;
 import org.cytoscape.view.presentation.annotations.ShapeAnnotation;
 import org.cytoscape.view.presentation.annotations.ShapeAnnotation.ShapeType;
@@ -100,6 +99,65 @@ public class ArgsShape extends ArgsBase<ShapeAnnotation> {
 		shape.update();
 	}
 	
+	/**
+	 * Updates an existing annotation by comparing against the values that were last applied to it,
+	 * which avoids calling getters on the annotation. If last is null the annotation is read instead.
+	 * @return true if the annotation was changed
+	 */
+	public boolean updateAnnotation(ShapeAnnotation shape, ArgsShape last) {
+		if(last == null) {
+			updateAnnotation(shape);
+			return true;
+		}
+		
+		boolean changed = false;
+		
+		if(x != last.x || y != last.y) {
+			shape.moveAnnotation(new Point2D.Double(x, y));
+			changed = true;
+		}
+		if(zoom != last.zoom) {
+			shape.setZoom(zoom);
+			changed = true;
+		}
+		if(width * zoom != last.width * last.zoom || height * zoom != last.height * last.zoom) {
+			shape.setSize(width * zoom, height * zoom);
+			changed = true;
+		}
+		if(shapeType != last.shapeType) {
+			shape.setShapeType(shapeType.toString());
+			changed = true;
+		}
+		if(borderWidth != last.borderWidth) {
+			shape.setBorderWidth(borderWidth);
+			changed = true;
+		}
+		if(!Objects.equals(borderColor, last.borderColor)) {
+			shape.setBorderColor(borderColor);
+			changed = true;
+		}
+		if(fillOpacity != last.fillOpacity) {
+			shape.setFillOpacity(fillOpacity);
+			changed = true;
+		}
+		if(borderOpacity != last.borderOpacity) {
+			shape.setBorderOpacity(borderOpacity);
+			changed = true;
+		}
+		if(!Objects.equals(fillColor, last.fillColor)) {
+			shape.setFillColor(fillColor);
+			changed = true;
+		}
+		if(!Objects.equals(name, last.name)) {
+			shape.setName(getAnnotationName());
+			changed = true;
+		}
+		
+		if(changed)
+			shape.update();
+		return changed;
+	}
+	
 	private String getAnnotationName() {
 		return "AutoAnnotate: " + name;
 	}
@@ -137,6 +195,18 @@ public class ArgsShape extends ArgsBase<ShapeAnnotation> {
 	
 	
 	public static ArgsShape createFor(Cluster cluster, boolean isSelected, Color selectedColor, Map<Cluster,Color> definedFillColors) {
+		// do not include hidden nodes, the per-node data is only needed to fit the ellipse
+		var shapeType = cluster.getParent().getDisplayOptions().getShapeType();
+		CoordinateData coordinateData = shapeType == ShapeType.ELLIPSE ? cluster.getCoordinateData(false) : cluster.getBounds(false);
+		return createFor(cluster, coordinateData, isSelected, selectedColor, definedFillColors);
+	}
+	
+	
+	/**
+	 * Creates the shape from coordinates that have already been taken from the cluster, does not access the network view.
+	 * The coordinate data must not include hidden nodes, and must have the per-node data if the shape is an ellipse.
+	 */
+	public static ArgsShape createFor(Cluster cluster, CoordinateData coordinateData, boolean isSelected, Color selectedColor, Map<Cluster,Color> definedFillColors) {
 		if(selectedColor == null)
 			selectedColor = Color.YELLOW;
 		
@@ -151,17 +221,15 @@ public class ArgsShape extends ArgsBase<ShapeAnnotation> {
 		
 		Color fillColor = getFillColor(displayOptions, cluster, definedFillColors);
 
-		CoordinateData coordinateData = cluster.getCoordinateData(false); // do not include hidden nodes
 		double centreX = coordinateData.getCenterX();
 		double centreY = coordinateData.getCenterY();
 		double width  = Double.max(coordinateData.getWidth(),  MIN_SIZE);
 		double height = Double.max(coordinateData.getHeight(), MIN_SIZE);
 		
 		if (shapeType == ShapeType.ELLIPSE) {
-			while (nodesOutOfCluster(coordinateData, width, height, centreX, centreY, borderWidth)) {
-				width *= 1.1;
-				height *= 1.1;
-			}
+			double scale = EnclosingEllipse.fitScale(coordinateData, centreX, centreY, width / 2, height / 2, borderWidth);
+			width *= scale;
+			height *= scale;
 			width += 40;
 			height += 40;
 		} else {
@@ -186,22 +254,4 @@ public class ArgsShape extends ArgsBase<ShapeAnnotation> {
 	}
 	
 	
-	private static boolean nodesOutOfCluster(CoordinateData data, double width, double height, double centreX, double centreY, int ellipseWidth) {
-		double semimajor_axis = width / 2;
-		double semiminor_axis = height / 2;
-		Map<CyNode,double[]> nodesToCoordinates = data.getCoordinates();
-		Map<CyNode,Double> nodesToRadii = data.getRadii();
-		
-		for (CyNode node : nodesToCoordinates.keySet()) {
-			double[] coordinates = nodesToCoordinates.get(node);
-			double nodeSize = nodesToRadii.get(node);
-			if (Math.pow((coordinates[0] - centreX - ellipseWidth) / semimajor_axis, 2) + Math.pow(nodeSize / semimajor_axis, 2)
-					+ Math.pow((coordinates[1] - centreY - ellipseWidth) / semiminor_axis, 2) + Math.pow(nodeSize / semiminor_axis, 2) >= 1) {
-				return true;
-			}
-		}
-		return false;
-	}
-	
-	
 }
\ No newline at end of file
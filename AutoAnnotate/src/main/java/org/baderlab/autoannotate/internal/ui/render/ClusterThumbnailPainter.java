@@ -0,0 +1,136 @@
+package org.baderlab.autoannotate.internal.ui.render;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.EDGE_STROKE_UNSELECTED_PAINT;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_FILL_COLOR;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.ViewSnapshot;
+import org.cytoscape.model.CyNode;
+
+/**
+ * Paints a cluster thumbnail directly with Java2D from the ViewSnapshot of the network view,
+ * without creating a subnetwork, network view or visual style. Nodes are drawn as circles using
+ * the fill color of the node in the network view, edges are drawn as straight lines.
+ */
+class ClusterThumbnailPainter {
+	
+	private static final Color DEFAULT_NODE_COLOR = Color.GRAY;
+	private static final Color DEFAULT_EDGE_COLOR = new Color(128, 128, 128, 160);
+	private static final double PADDING = 0.08; // fraction of the image size on each side
+	private static final double MIN_NODE_DIAMETER = 2;
+	
+	private ClusterThumbnailPainter() {}
+	
+	
+	/**
+	 * Returns a multi-resolution image of the given size and twice the size.
+	 */
+	static Image paint(Cluster cluster, Color background, int size) {
+		var imageSmall = paint(cluster, background, size, size);
+		var imageLarge = paint(cluster, background, size * 2, size * 2);
+		return new BaseMultiResolutionImage(imageSmall, imageLarge);
+	}
+	
+	
+	private static BufferedImage paint(Cluster cluster, Color background, int width, int height) {
+		var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			if(background != null) {
+				g.setColor(background);
+				g.fillRect(0, 0, width, height);
+			}
+			paintNetwork(g, cluster, width, height);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}
+	
+	
+	private static void paintNetwork(Graphics2D g, Cluster cluster, int width, int height) {
+		var snapshot = cluster.getParent().getParent().getViewSnapshot();
+		var netView = cluster.getNetworkView();
+		
+		// bounds of the visible nodes, including their size
+		double xmin = Double.MAX_VALUE, ymin = Double.MAX_VALUE;
+		double xmax = -Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
+		int count = 0;
+		for(CyNode node : cluster.getNodes()) {
+			if(isDrawn(snapshot, node)) {
+				double r = snapshot.getSize(node) / 2;
+				xmin = Math.min(xmin, snapshot.getX(node) - r);
+				xmax = Math.max(xmax, snapshot.getX(node) + r);
+				ymin = Math.min(ymin, snapshot.getY(node) - r);
+				ymax = Math.max(ymax, snapshot.getY(node) + r);
+				count++;
+			}
+		}
+		if(count == 0)
+			return;
+		
+		double pad = PADDING * Math.min(width, height);
+		double bw = Math.max(xmax - xmin, 1);
+		double bh = Math.max(ymax - ymin, 1);
+		double scale = Math.min((width - 2 * pad) / bw, (height - 2 * pad) / bh);
+		double ox = (width  - bw * scale) / 2 - xmin * scale;
+		double oy = (height - bh * scale) / 2 - ymin * scale;
+		
+		// edges first so that nodes are drawn on top
+		g.setStroke(new BasicStroke((float) Math.max(1, width / 160.0)));
+		var line = new Line2D.Double();
+		Map<Color,Color> edgeColors = new HashMap<>();
+		for(var edge : cluster.getEdges()) {
+			CyNode source = edge.getSource();
+			CyNode target = edge.getTarget();
+			if(source == target || !isDrawn(snapshot, source) || !isDrawn(snapshot, target))
+				continue;
+			
+			var edgeView = netView.getEdgeView(edge);
+			var paint = edgeView == null ? null : edgeView.getVisualProperty(EDGE_STROKE_UNSELECTED_PAINT);
+			var color = paint instanceof Color ? edgeColors.computeIfAbsent((Color)paint, ClusterThumbnailPainter::translucent) : DEFAULT_EDGE_COLOR;
+			
+			g.setColor(color);
+			line.setLine(
+				snapshot.getX(source) * scale + ox, snapshot.getY(source) * scale + oy,
+				snapshot.getX(target) * scale + ox, snapshot.getY(target) * scale + oy);
+			g.draw(line);
+		}
+		
+		var circle = new Ellipse2D.Double();
+		for(CyNode node : cluster.getNodes()) {
+			if(!isDrawn(snapshot, node))
+				continue;
+			
+			var nodeView = netView.getNodeView(node);
+			var paint = nodeView == null ? null : nodeView.getVisualProperty(NODE_FILL_COLOR);
+			g.setColor(paint instanceof Color ? (Color)paint : DEFAULT_NODE_COLOR);
+			
+			double d = Math.max(snapshot.getSize(node) * scale, MIN_NODE_DIAMETER);
+			circle.setFrame(snapshot.getX(node) * scale + ox - d / 2, snapshot.getY(node) * scale + oy - d / 2, d, d);
+			g.fill(circle);
+		}
+	}
+	
+	private static boolean isDrawn(ViewSnapshot snapshot, CyNode node) {
+		return snapshot.hasView(node) && snapshot.isVisible(node);
+	}
+	
+	private static Color translucent(Color color) {
+		return new Color(color.getRed(), color.getGreen(), color.getBlue(), 160);
+	}
+	
+}
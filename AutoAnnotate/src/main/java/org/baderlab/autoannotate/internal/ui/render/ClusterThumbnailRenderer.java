@@ -8,20 +8,30 @@ import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_Y
 import java.awt.Color;
 import java.awt.Image;
 import java.awt.image.BaseMultiResolutionImage;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Objects;
+import java.lang.ref.SoftReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.Icon;
 import javax.swing.UIManager;
 
 import org.baderlab.autoannotate.internal.AfterInjection;
+import org.baderlab.autoannotate.internal.Setting;
+import org.baderlab.autoannotate.internal.SettingManager;
+import org.baderlab.autoannotate.internal.model.AsyncSubscribe;
 import org.baderlab.autoannotate.internal.model.Cluster;
 import org.baderlab.autoannotate.internal.model.ModelEvents;
 import org.baderlab.autoannotate.internal.model.ModelEvents.DisplayOptionChanged.Option;
 import org.cytoscape.model.CyNetwork;
-import org.cytoscape.model.CyNode;
 import org.cytoscape.model.SavePolicy;
 import org.cytoscape.model.subnetwork.CyRootNetworkManager;
 import org.cytoscape.model.subnetwork.CySubNetwork;
@@ -29,16 +39,14 @@ import org.cytoscape.util.swing.IconManager;
 import org.cytoscape.util.swing.TextIcon;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.CyNetworkViewFactory;
-import org.cytoscape.view.model.View;
-import org.cytoscape.view.model.VisualProperty;
 import org.cytoscape.view.presentation.NetworkImageFactory;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.view.vizmap.VisualMappingManager;
 import org.cytoscape.view.vizmap.VisualStyleFactory;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.eventbus.EventBus;
@@ -47,11 +55,33 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 
+/**
+ * Renders cluster thumbnails on a small pool of background threads.
+ * <br>
+ * Thumbnails are returned as futures. A cached thumbnail is returned as a completed future, otherwise the
+ * caller can show {@link #getEmptyIcon()} as a placeholder and repaint when the future completes.
+ * The cluster table prefetches the thumbnails of the rows that are visible, prefetch requests for rows
+ * that scroll out of view are cancelled if they haven't started yet. Prefetching is disabled for high fidelity thumbnails.
+ * <br>
+ * The annotation colors are read on the thread that requests the thumbnail, the AnnotationRenderer is not thread safe.
+ * <br>
+ * By default thumbnails are painted directly by {@link ClusterThumbnailPainter}, if {@link Setting#THUMBNAIL_HIGH_FIDELITY} 
+ * is set they are rendered from a subnetwork view with a copy of the visual style instead.
+ * <br>
+ * The cache is limited by the approximate memory used by the thumbnails, see {@link Setting#THUMBNAIL_CACHE_MB}.
+ * Thumbnails evicted from the cache are kept softly referenced until the JVM needs the memory.
+ * A cached thumbnail is valid as long as the geometry version and display options of the cluster haven't changed.
+ */
 @Singleton
 public class ClusterThumbnailRenderer {
 	
 	public static final int IMG_SIZE = 160;
-	public static final int CACHE_MAX = 100;
+	public static final int WORKER_THREADS = 2;
+	
+	// ARGB thumbnail at 1x and 2x resolution
+	private static final int IMAGE_BYTES = IMG_SIZE * IMG_SIZE * 4 * 5;
+	// rough size of a node or edge of a high fidelity thumbnail subnetwork and its view
+	private static final int NETWORK_ELEMENT_BYTES = 1024;
 	
 	@Inject private NetworkImageFactory networkImageFactory;
 	@Inject private CyRootNetworkManager rootNetworkManager;
@@ -60,22 +90,62 @@ public class ClusterThumbnailRenderer {
 	@Inject private VisualStyleFactory visualStyleFactory;
 	@Inject private IconManager iconManager;
 	@Inject private Provider<AnnotationRenderer> annotationRendererProvider;
+	@Inject private SettingManager settingManager;
 	
 	private Icon emptyIcon;
-	private LoadingCache<Cluster, ThumbnailValue> cache;
- 	
+	private Cache<Cluster, ThumbnailValue> cache;
+	
+	private final ExecutorService executor;
+	private final Map<Cluster,CompletableFuture<Image>> pending = new ConcurrentHashMap<>();
+	private final Set<Cluster> prefetching = ConcurrentHashMap.newKeySet(); // pending requests that may be cancelled
+	private final Map<Cluster,SoftReference<ThumbnailValue>> overflow = Collections.synchronizedMap(new WeakHashMap<>()); // evicted, kept until memory is needed
+	
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	
 	
 	// TODO: replace with a record when updating java
 	private static class ThumbnailValue {
+		// Fingerprint of the cluster state the thumbnail was rendered from, taken before rendering starts
+		// so that a change made while the thumbnail is being rendered is not missed.
+		final long version;
+		final int opacity;
+		final int rgb;
+		final boolean show;
+		
 		CySubNetwork network;
 		Image image;
-		int hash;
+		int weight;
 		
-		public ThumbnailValue(CySubNetwork network, Image image, int hash) {
-			this.network = network;
-			this.image = image;
-			this.hash = hash;
+		ThumbnailValue(Cluster cluster) {
+			var dispOpts = cluster.getParent().getDisplayOptions();
+			this.version = cluster.getGeometryVersion();
+			this.opacity = dispOpts.getOpacity();
+			this.rgb = dispOpts.getFillColor().getRGB();
+			this.show = dispOpts.isShowClusters();
 		}
+		
+		/**
+		 * Returns true if the cluster visibility, opacity, color and node positions are the same as when the
+		 * thumbnail was rendered. Runs in constant time and doesn't allocate.
+		 */
+		boolean isValid(Cluster cluster) {
+			var dispOpts = cluster.getParent().getDisplayOptions();
+			return version == cluster.getGeometryVersion()
+				&& opacity == dispOpts.getOpacity()
+				&& rgb == dispOpts.getFillColor().getRGB()
+				&& show == dispOpts.isShowClusters();
+		}
+	}
+	
+	public ClusterThumbnailRenderer() {
+		var count = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(WORKER_THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "AutoAnnotate Thumbnails " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
 	}
 	
 	@Inject
@@ -84,149 +154,220 @@ public class ClusterThumbnailRenderer {
 	}
 	
 	
-	/**
-	 * Computes a hash code from the cluster visibility, opacity, color and relative node positions.
-	 * If any of those things change then the thumbnail must be updated.
-	 */
-	private static int hash(Cluster cluster) {
-		var n = cluster.getNodeCount();
-		List<Integer> xCoords = new ArrayList<>(n);
-		List<Integer> yCoords = new ArrayList<>(n);
-		List<Boolean> visible = new ArrayList<>(n);
-		
-		// Cluster stores nodes in a Set, but we need consistent iteration order
-		var nodes = new ArrayList<>(cluster.getNodes());
-		nodes.sort(Comparator.comparing(CyNode::getSUID));
-		
-		int minX = Integer.MAX_VALUE;
-		int minY = Integer.MAX_VALUE;
-		
-		var netView = cluster.getNetworkView();
-		for(var node : nodes) {
-			var nodeView = netView.getNodeView(node);
-			
-			// Round to avoid generating a different hash because of small changes to the positions
-			// Note due to imprecision the hash can change sometimes, still prevents invalidation in most cases
-			var x = getRoundedVal(nodeView, BasicVisualLexicon.NODE_X_LOCATION);
-			var y = getRoundedVal(nodeView, BasicVisualLexicon.NODE_Y_LOCATION);
-			var v = nodeView.getVisualProperty(BasicVisualLexicon.NODE_VISIBLE);
-			
-			minX = Math.min(minX, x);
-			minY = Math.min(minY, y);
-			
-			xCoords.add(x);
-			yCoords.add(y);
-			visible.add(v);
+	private ThumbnailValue load(Cluster cluster, Color clusterColor) {
+		var value = new ThumbnailValue(cluster);
+		if(settingManager.getValue(Setting.THUMBNAIL_HIGH_FIDELITY)) {
+			value.network = createClusterNetwork(cluster);
+			value.image = createThumbnailImage(cluster, value.network, clusterColor);
+			long elements = value.network.getNodeCount() + value.network.getEdgeCount();
+			value.weight = (int) Math.min(Integer.MAX_VALUE, IMAGE_BYTES + elements * NETWORK_ELEMENT_BYTES);
+		} else {
+			var background = blend(getBackgroundColor(cluster.getNetworkView()), clusterColor);
+			value.image = ClusterThumbnailPainter.paint(cluster, background, IMG_SIZE);
+			value.weight = IMAGE_BYTES;
 		}
-		
-		// Normalize the coordinates relative to the point (minX, minY), that way panning doesn't invalidate the cache entry.
-		// Note: The node X/Y positions are doubles, and they suffer from imprecision when the cluster is being panned.
-		// This method sometimes results in the cache being invalidated when it doesn't need to be, but that's ok.
-		for(int i = 0; i < xCoords.size(); i++) {
-			xCoords.set(i, xCoords.get(i) - minX);
-		}
-		for(int i = 0; i < yCoords.size(); i++) {
-			yCoords.set(i, yCoords.get(i) - minY);
-		}
-		
-		var dispOpts = cluster.getParent().getDisplayOptions();
-		int opacity = dispOpts.getOpacity();
-		var show = dispOpts.isShowClusters();
-		int rgb = dispOpts.getFillColor().getRGB();
-		
-		return Objects.hash(xCoords, yCoords, visible, opacity, rgb, show);
-	}
-	
-	
-	private static int getRoundedVal(View<CyNode> nodeView, VisualProperty<Double> vp) {
-		Double value = nodeView.getVisualProperty(vp);
-		if(value == null)
-			return 0;
-//		return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).doubleValue();
-		return value.intValue();
+		return value;
 	}
 	
 	
 	@AfterInjection
 	private void initCache() {
-		var loader = new CacheLoader<Cluster,ThumbnailValue>() {
-	        @Override 
-	        public ThumbnailValue load(Cluster cluster) {
-	        	var network = createClusterNetwork(cluster);
-	            var image = createThumbnailImage(cluster, network);
-	            int hash = hash(cluster);
-	            return new ThumbnailValue(network, image, hash);
-	        }
-	    };
-	    
-	    var removalListener = new RemovalListener<Cluster,ThumbnailValue>() {
-	        @Override 
-	        public void onRemoval(RemovalNotification<Cluster,ThumbnailValue> n) {
-	            if(n.wasEvicted()) {
-	            	dispose(n.getValue().network);
-	            }
-	        }
-	    };
-	        
-	    cache = CacheBuilder.newBuilder()
-	    	.maximumSize(CACHE_MAX)
-	    	.weakKeys()
-	    	.removalListener(removalListener)
-	    	.build(loader);
+		var removalListener = new RemovalListener<Cluster,ThumbnailValue>() {
+			@Override 
+			public void onRemoval(RemovalNotification<Cluster,ThumbnailValue> n) {
+				var value = n.getValue();
+				if(value == null)
+					return;
+				if(n.wasEvicted() || n.getCause() == RemovalCause.EXPLICIT) {
+					dispose(value.network);
+					value.network = null;
+				}
+				if(n.getCause() == RemovalCause.SIZE) {
+					evictionCount.incrementAndGet();
+					overflow.put(n.getKey(), new SoftReference<>(value));
+				}
+			}
+		};
+		
+		long maxBytes = Math.max(0, settingManager.getValue(Setting.THUMBNAIL_CACHE_MB)) * 1024L * 1024L;
+		
+		cache = CacheBuilder.newBuilder()
+			.maximumWeight(maxBytes)
+			.weigher((Cluster cluster, ThumbnailValue value) -> value.weight)
+			.weakKeys()
+			.removalListener(removalListener)
+			.build();
 	}
 	
 	
-	@Subscribe
+	@Subscribe @AsyncSubscribe // cache invalidation must not hold up the EDT
 	public void handle(ModelEvents.DisplayOptionChanged event) {
 		var option = event.getOption();
 		if(option == Option.OPACITY || option == Option.SHOW_CLUSTERS || option == Option.FILL_COLOR) {
 			var clusters = event.getDisplayOptions().getParent().getClusters();
 			cache.invalidateAll(clusters);
+			clusters.forEach(overflow::remove);
 		}
 	}
 	
 	
-	private void invalidateIfHashChanged(Cluster cluster) {
+	/**
+	 * Returns the cached thumbnail if it is still valid, promoting it back into the cache if it was only softly referenced.
+	 * Returns null if the thumbnail needs to be rendered.
+	 */
+	private Image getCachedImage(Cluster cluster) {
 		var value = cache.getIfPresent(cluster);
-		if(value == null)
-			return;
-		
-		int hash = hash(cluster);
-		if(value.hash != hash) {
+		if(value == null) {
+			var ref = overflow.remove(cluster);
+			value = ref == null ? null : ref.get();
+			if(value == null)
+				return null;
+			if(value.isValid(cluster))
+				cache.put(cluster, value);
+		}
+		if(!value.isValid(cluster)) {
 			cache.invalidate(cluster);
+			return null;
 		}
+		return value.image;
 	}
 	
 	
-	public Image getThumbnailImage(Cluster cluster) {
+	/**
+	 * Returns the thumbnail of the cluster. If the thumbnail is cached and up to date a completed future 
+	 * is returned, otherwise the thumbnail is rendered in the background. The future is completed on a worker thread.
+	 * Must be called on the EDT.
+	 */
+	public CompletableFuture<Image> getThumbnailImage(Cluster cluster) {
 		if(cluster == null)
-			return null;
+			return CompletableFuture.completedFuture(null);
+		
+		prefetching.remove(cluster); // explicitly requested, don't cancel
+		var image = getCachedImage(cluster);
+		if(image != null) {
+			hitCount.incrementAndGet();
+			return CompletableFuture.completedFuture(image);
+		}
+		return request(cluster);
+	}
+	
+	
+	/**
+	 * Starts rendering the thumbnails of the given clusters in the background, and cancels the
+	 * prefetch requests for any other clusters that haven't started yet.
+	 */
+	public void prefetch(Collection<Cluster> clusters) {
+		if(settingManager.getValue(Setting.THUMBNAIL_HIGH_FIDELITY))
+			return; // each thumbnail creates a subnetwork, only render the ones that are shown
 		
-		invalidateIfHashChanged(cluster);
+		for(var cluster : prefetching) {
+			if(!clusters.contains(cluster) && prefetching.remove(cluster)) {
+				var future = pending.get(cluster);
+				if(future != null)
+					future.cancel(false);
+			}
+		}
+		for(var cluster : clusters) {
+			if(cluster != null && !pending.containsKey(cluster) && getCachedImage(cluster) == null) {
+				prefetching.add(cluster);
+				request(cluster);
+			}
+		}
+	}
+	
+	
+	private CompletableFuture<Image> request(Cluster cluster) {
+		var future = new CompletableFuture<Image>();
+		var existing = pending.putIfAbsent(cluster, future);
+		if(existing != null)
+			return existing;
 		
-		var value = cache.getUnchecked(cluster);
-		return value == null ? null : value.image;
+		if(executor.isShutdown()) {
+			pending.remove(cluster, future);
+			future.cancel(false);
+			return future;
+		}
 		
+		missCount.incrementAndGet();
+		var clusterColor = getClusterColor(cluster); // on the calling thread
+		var task = executor.submit(() -> {
+			try {
+				var v = load(cluster, clusterColor);
+				if(executor.isShutdown()) { // disposed while rendering
+					dispose(v.network);
+					future.cancel(false);
+					return;
+				}
+				cache.put(cluster, v);
+				future.complete(v.image);
+			} catch(Exception e) {
+				future.completeExceptionally(e);
+			}
+		});
+		future.whenComplete((image, ex) -> {
+			pending.remove(cluster, future);
+			prefetching.remove(cluster);
+			if(future.isCancelled())
+				task.cancel(false);
+		});
+		return future;
 	}
 	
 	
-	private Image createThumbnailImage(Cluster cluster, CyNetwork clusterNetwork) {
+	/**
+	 * Stops the worker threads, cancels the pending requests and disposes the cached thumbnails
+	 * and their subnetworks. Called when the app is stopped.
+	 */
+	public void dispose() {
+		executor.shutdown(); // queued renders are cancelled with their futures
+		pending.values().forEach(future -> future.cancel(false));
+		pending.clear();
+		prefetching.clear();
+		cache.invalidateAll();
+		overflow.clear();
+	}
+	
+	
+	/**
+	 * The number of thumbnails that were requested and returned from the cache.
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+	
+	/**
+	 * The number of thumbnails that had to be rendered.
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+	
+	/**
+	 * The number of thumbnails that were evicted from the cache because it was over the memory budget.
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	
+	
+	private Image createThumbnailImage(Cluster cluster, CyNetwork clusterNetwork, Color clusterColor) {
 		var clusterView = networkViewFactory.createNetworkView(clusterNetwork);
 		
 		int width = IMG_SIZE, height = IMG_SIZE;
 		clusterView.setVisualProperty(NETWORK_WIDTH,  Double.valueOf(width));
 		clusterView.setVisualProperty(NETWORK_HEIGHT, Double.valueOf(height));
 		
+		var snapshot = cluster.getParent().getParent().getViewSnapshot();
 		for(var nodeView : clusterView.getNodeViews()) {
-			var origNodeView = cluster.getNetworkView().getNodeView(nodeView.getModel());
-			if(origNodeView != null) {
-				nodeView.setVisualProperty(NODE_X_LOCATION, origNodeView.getVisualProperty(NODE_X_LOCATION));
-				nodeView.setVisualProperty(NODE_Y_LOCATION, origNodeView.getVisualProperty(NODE_Y_LOCATION));
-//				nodeView.setVisualProperty(NODE_VISIBLE,    origNodeView.getVisualProperty(NODE_VISIBLE));
+			var node = nodeView.getModel();
+			if(snapshot.hasView(node)) {
+				nodeView.setVisualProperty(NODE_X_LOCATION, snapshot.getX(node));
+				nodeView.setVisualProperty(NODE_Y_LOCATION, snapshot.getY(node));
 			}
 		}
 		
-		applyStyle(cluster, clusterView);
+		applyStyle(cluster, clusterView, clusterColor);
 		
 		var imageSmall = networkImageFactory.createImage(clusterView, width,   height);
 		var imageLarge = networkImageFactory.createImage(clusterView, width*2, height*2);
@@ -236,7 +377,7 @@ public class ClusterThumbnailRenderer {
 	}
 	
 	
-	private void applyStyle(Cluster cluster, CyNetworkView clusterView) {
+	private void applyStyle(Cluster cluster, CyNetworkView clusterView, Color clusterColor) {
 		var originalVS = visualMappingManager.getVisualStyle(cluster.getNetworkView());
 		if(originalVS != null) {
 			var vs = visualStyleFactory.createVisualStyle(originalVS); // make a copy
@@ -246,7 +387,6 @@ public class ClusterThumbnailRenderer {
 		
 		
 		var bgColor = getBackgroundColor(cluster.getNetworkView());
-		var clusterColor = getClusterColor(cluster);
 		var color = blend(bgColor, clusterColor);
 		
 		clusterView.setViewDefault(BasicVisualLexicon.NETWORK_BACKGROUND_PAINT, color);
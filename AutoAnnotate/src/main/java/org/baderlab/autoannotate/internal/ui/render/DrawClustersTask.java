@@ -5,18 +5,21 @@ import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_L
 
 import java.awt.Color;
 import java.awt.Paint;
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.baderlab.autoannotate.internal.BuildProperties;
 import org.baderlab.autoannotate.internal.model.AnnotationSet;
 import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.CoordinateData;
 import org.baderlab.autoannotate.internal.model.DisplayOptions.FillType;
 import org.baderlab.autoannotate.internal.model.SignificanceOptions.Highlight;
-import org.baderlab.autoannotate.internal.util.HiddenTools;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.View;
@@ -25,6 +28,7 @@ import org.cytoscape.view.presentation.annotations.Annotation;
 import org.cytoscape.view.presentation.annotations.AnnotationFactory;
 import org.cytoscape.view.presentation.annotations.AnnotationManager;
 import org.cytoscape.view.presentation.annotations.ShapeAnnotation;
+import org.cytoscape.view.presentation.annotations.ShapeAnnotation.ShapeType;
 import org.cytoscape.view.presentation.annotations.TextAnnotation;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.view.vizmap.VisualMappingManager;
@@ -37,6 +41,8 @@ import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
 public class DrawClustersTask extends AbstractTask {
+	
+	private static final int PARALLEL_THRESHOLD = 32;
 
 	@Inject private AnnotationFactory<TextAnnotation> textFactory;
 	@Inject private AnnotationFactory<ShapeAnnotation> shapeFactory;
@@ -45,6 +51,7 @@ public class DrawClustersTask extends AbstractTask {
 	@Inject private AnnotationManager annotationManager;
 	@Inject private AnnotationRenderer annotationRenderer;
 	@Inject private SignificanceLookup significanceLookup;
+	@Inject private ViewportCuller viewportCuller;
 	
 	private final Collection<Cluster> clusters;
 	
@@ -81,18 +88,70 @@ public class DrawClustersTask extends AbstractTask {
 	}
 	
 	
+	/**
+	 * The argument values for the annotations of one cluster. 
+	 */
+	private static class ClusterArgs {
+		final Cluster cluster;
+		final ArgsShape shapeArgs;
+		final List<ArgsLabel> labelArgs;
+		
+		ClusterArgs(Cluster cluster, ArgsShape shapeArgs, List<ArgsLabel> labelArgs) {
+			this.cluster = cluster;
+			this.shapeArgs = shapeArgs;
+			this.labelArgs = labelArgs;
+		}
+	}
+	
+	
 	private List<Annotation> createAnnotations() {
-		List<Annotation> allAnnotations = new ArrayList<>();
+		// Assume all clusters are from the same annotation set
+		AnnotationSet as = clusters.iterator().next().getParent();
+		CyNetworkView networkView = as.getParent().getNetworkView();
+		
 		var significanceColors = getSignificanceColors(); // may be null
+		Color selection = getSelectionColor(visualMappingManager, networkView);
+		Rectangle2D cullingArea = viewportCuller.getCullingArea(as);
+		boolean showLabels = viewportCuller.isShowLabels(networkView);
 		
+		// Take a snapshot of the coordinates of all the clusters to draw, the per-node data is only needed to fit the ellipse
+		boolean ellipse = as.getDisplayOptions().getShapeType() == ShapeType.ELLIPSE;
+		var toDraw = new ArrayList<Cluster>(clusters.size());
+		var coordinates = new ArrayList<CoordinateData>(clusters.size());
+		var selected = new ArrayList<Boolean>(clusters.size());
 		for(var cluster : clusters) {
-			if(!cluster.isCollapsed() && !HiddenTools.allNodesHidden(cluster)) {
-				boolean isSelected = annotationRenderer.isSelected(cluster);
-				AnnotationGroup group = createClusterAnnotations(cluster, isSelected, significanceColors);
-				annotationRenderer.putAnnotations(cluster, group);
-				allAnnotations.addAll(group.getAnnotations());
+			if(annotationRenderer.getAnnotations(cluster) != null) // already drawn, eg by a selection update that ran first
+				continue;
+			if(!cluster.isCollapsed() && ViewportCuller.intersects(cullingArea, cluster)) {
+				var data = ellipse ? cluster.getCoordinateData(false) : cluster.getBounds(false);
+				if(data.getNodeCount() > 0) { // not all nodes hidden
+					toDraw.add(cluster);
+					coordinates.add(data);
+					selected.add(annotationRenderer.isSelected(cluster));
+				}
 			}
 		}
+		
+		// Computing the argument values doesn't touch the network view or the annotations, so it can run in parallel
+		IntStream indexes = IntStream.range(0, toDraw.size());
+		if(toDraw.size() >= PARALLEL_THRESHOLD)
+			indexes = indexes.parallel();
+		
+		List<ClusterArgs> clusterArgs = indexes.mapToObj(i -> {
+			var cluster = toDraw.get(i);
+			boolean isSelected = selected.get(i);
+			ArgsShape shapeArgs = ArgsShape.createFor(cluster, coordinates.get(i), isSelected, selection, significanceColors);
+			List<ArgsLabel> labelArgs = showLabels ? ArgsLabel.createFor(shapeArgs, cluster, isSelected, selection) : List.of();
+			return new ClusterArgs(cluster, shapeArgs, labelArgs);
+		}).collect(Collectors.toList());
+		
+		// Creating the annotation objects stays on this thread
+		List<Annotation> allAnnotations = new ArrayList<>();
+		for(var args : clusterArgs) {
+			AnnotationGroup group = createClusterAnnotations(networkView, args);
+			annotationRenderer.putAnnotations(args.cluster, group);
+			allAnnotations.addAll(group.getAnnotations());
+		}
 		return allAnnotations;
 	}
 	
@@ -115,32 +174,18 @@ public class DrawClustersTask extends AbstractTask {
 		return null;
 	}
 	
-	private AnnotationGroup createClusterAnnotations(Cluster cluster, boolean isSelected, Map<Cluster,Color> significanceColors) {
-		AnnotationSet annotationSet = cluster.getParent();
-		CyNetworkView networkView = annotationSet.getParent().getNetworkView();
-		
-		Color selection = getSelectionColor(visualMappingManager, networkView);
-		ArgsShape shapeArgs = ArgsShape.createFor(cluster, isSelected, selection, significanceColors);
-		ShapeAnnotation shape = shapeFactory.createAnnotation(ShapeAnnotation.class, networkView, shapeArgs.getArgMap());
-		
-		List<ArgsLabel> labelArgsList = ArgsLabel.createFor(shapeArgs, cluster, isSelected, selection);
-		
-		if(annotationSet.getDisplayOptions().isUseWordWrap()) {
-			int n = labelArgsList.size();
-			for(int i = 0; i < n; i++) {
-				labelArgsList.get(i).setIndexOfTotal(i+1, n);
-			}
-		}
+	private AnnotationGroup createClusterAnnotations(CyNetworkView networkView, ClusterArgs args) {
+		ShapeAnnotation shape = shapeFactory.createAnnotation(ShapeAnnotation.class, networkView, args.shapeArgs.getArgMap());
 		
-		List<TextAnnotation> textAnnotations = new ArrayList<>(labelArgsList.size());
+		List<TextAnnotation> textAnnotations = new ArrayList<>(args.labelArgs.size());
 		
-		for(ArgsLabel labelArgs : labelArgsList) {
+		for(ArgsLabel labelArgs : args.labelArgs) {
 			Map<String, String> argMap = labelArgs.getArgMap();
 			TextAnnotation text = textFactory.createAnnotation(TextAnnotation.class, networkView, argMap);
 			textAnnotations.add(text);
 		}
 		
-		return new AnnotationGroup(shape, textAnnotations);
+		return new AnnotationGroup(shape, textAnnotations, args.shapeArgs, args.labelArgs);
 	}
 	
 	
@@ -159,7 +204,7 @@ public class DrawClustersTask extends AbstractTask {
 		}
 	}
 	
-	private void highlightLabel(Cluster cluster, CyNode sigNode) {
+	static void highlightLabel(Cluster cluster, CyNode sigNode) {
 		var nodeView = cluster.getNetworkView().getNodeView(sigNode);
 		if(nodeView == null)
 			return;
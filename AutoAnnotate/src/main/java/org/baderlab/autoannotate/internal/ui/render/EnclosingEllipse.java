@@ -0,0 +1,64 @@
+package org.baderlab.autoannotate.internal.ui.render;
+
+import org.baderlab.autoannotate.internal.model.CoordinateData;
+
+/**
+ * Computes the axis-aligned ellipse that encloses a set of nodes in a single pass.
+ * <br>
+ * A node at (x,y) with size r is inside the ellipse centred at (cx,cy) with semi-axes a and b if
+ * <pre>((x-cx-offset)/a)² + (r/a)² + ((y-cy-offset)/b)² + (r/b)² &lt; 1</pre>
+ * Scaling both semi-axes by k divides the left hand side by k², so the smallest k that fits every
+ * node is the square root of the maximum of the left hand side over all the nodes.
+ */
+public class EnclosingEllipse {
+	
+	private EnclosingEllipse() {}
+	
+	
+	/**
+	 * Returns the factor (at least 1) that the semi-axes a and b must be scaled by so that the ellipse encloses all the nodes.
+	 */
+	public static double fitScale(double[] xs, double[] ys, double[] sizes, int count, double cx, double cy, double a, double b, double offset) {
+		double ia2 = 1 / (a * a);
+		double ib2 = 1 / (b * b);
+		double ox = cx + offset;
+		double oy = cy + offset;
+		
+		double max = 0;
+		for(int i = 0; i < count; i++) {
+			double dx = xs[i] - ox;
+			double dy = ys[i] - oy;
+			double r2 = sizes[i] * sizes[i];
+			double d = (dx * dx + r2) * ia2 + (dy * dy + r2) * ib2;
+			if(d > max)
+				max = d;
+		}
+		return max < 1 ? 1 : Math.sqrt(max);
+	}
+	
+	
+	/**
+	 * Returns the factor (at least 1) that the semi-axes a and b must be scaled by so that the ellipse encloses all the nodes.
+	 */
+	public static double fitScale(CoordinateData data, double cx, double cy, double a, double b, double offset) {
+		int count = data.getNodeCount();
+		
+		if(!data.hasNodeArrays()) {
+			double[] xs = new double[count];
+			double[] ys = new double[count];
+			double[] sizes = new double[count];
+			var radii = data.getRadii();
+			int i = 0;
+			for(var entry : data.getCoordinates().entrySet()) {
+				xs[i] = entry.getValue()[0];
+				ys[i] = entry.getValue()[1];
+				sizes[i] = radii.get(entry.getKey());
+				i++;
+			}
+			return fitScale(xs, ys, sizes, count, cx, cy, a, b, offset);
+		}
+		
+		return fitScale(data.getXArray(), data.getYArray(), data.getRadiusArray(), count, cx, cy, a, b, offset);
+	}
+	
+}
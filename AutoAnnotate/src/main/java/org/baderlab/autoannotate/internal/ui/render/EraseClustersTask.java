@@ -84,7 +84,7 @@ public class EraseClustersTask extends AbstractTask {
 	}
 	
 	
-	private void clearHighlight(Cluster cluster) {
+	static void clearHighlight(Cluster cluster) {
 		Long nodeSUID = cluster.getHighlightedNode();
 		if(nodeSUID == null)
 			return;
@@ -0,0 +1,111 @@
+package org.baderlab.autoannotate.internal.ui.render;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.baderlab.autoannotate.internal.ui.view.display.Significance;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+
+/**
+ * Assigns every node of a network a global significance rank (0 is most significant).
+ * The index is built once, after that the most significant node of a cluster is found
+ * with a single pass over the cluster nodes and sorting a cluster only compares int ranks.
+ * Nodes with equal significance get the same rank.
+ */
+class SignificanceIndex {
+	
+	private static final int UNRANKED = Integer.MAX_VALUE;
+	
+	private final Map<CyNode,Integer> ranks;
+	
+	
+	private SignificanceIndex(Map<CyNode,Integer> ranks) {
+		this.ranks = ranks;
+	}
+	
+	/**
+	 * Creates an index from a list of nodes that is already sorted by significance, e.g. by EnrichmentMap.
+	 */
+	static SignificanceIndex fromSortedNodes(List<CyNode> sortedNodes) {
+		Map<CyNode,Integer> ranks = new HashMap<>(sortedNodes.size() * 2);
+		for(int i = 0; i < sortedNodes.size(); i++) {
+			ranks.putIfAbsent(sortedNodes.get(i), i);
+		}
+		return new SignificanceIndex(ranks);
+	}
+	
+	/**
+	 * Creates an index from the values of a numeric significance column, nodes with missing values are not ranked.
+	 * Returns null if the column does not exist or is not numeric.
+	 */
+	static SignificanceIndex fromColumn(CyNetwork network, String sigCol, Significance sigOp) {
+		var column = network.getDefaultNodeTable().getColumn(sigCol);
+		if(column == null || !Number.class.isAssignableFrom(column.getType()))
+			return null;
+		
+		List<CyNode> nodes = new ArrayList<>();
+		Map<CyNode,Number> values = new HashMap<>();
+		for(var node : network.getNodeList()) {
+			var value = (Number) network.getRow(node).get(sigCol, column.getType());
+			if(value != null) {
+				nodes.add(node);
+				values.put(node, value);
+			}
+		}
+		
+		Comparator<Number> comparator = sigOp.comparator();
+		nodes.sort(Comparator.comparing(values::get, comparator));
+		
+		Map<CyNode,Integer> ranks = new HashMap<>(nodes.size() * 2);
+		int rank = 0;
+		for(int i = 0; i < nodes.size(); i++) {
+			if(i > 0 && comparator.compare(values.get(nodes.get(i-1)), values.get(nodes.get(i))) != 0)
+				rank = i;
+			ranks.put(nodes.get(i), rank);
+		}
+		return new SignificanceIndex(ranks);
+	}
+	
+	
+	private int getRank(CyNode node) {
+		return ranks.getOrDefault(node, UNRANKED);
+	}
+	
+	/**
+	 * Returns the most significant of the given nodes in O(n), or null if none of the nodes are ranked and includeUnranked is false.
+	 * Ties are broken by iteration order.
+	 */
+	CyNode getMostSignificant(Collection<CyNode> nodes, boolean includeUnranked) {
+		CyNode best = null;
+		int bestRank = UNRANKED;
+		for(CyNode node : nodes) {
+			int rank = getRank(node);
+			if(rank < bestRank || (best == null && includeUnranked)) {
+				best = node;
+				bestRank = rank;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Returns the given nodes sorted by rank, ties keep their iteration order.
+	 * Unranked nodes are put at the end if includeUnranked is true, otherwise they are left out.
+	 */
+	List<CyNode> sort(Collection<CyNode> nodes, boolean includeUnranked) {
+		List<CyNode> sorted = new ArrayList<>(nodes.size());
+		for(CyNode node : nodes) {
+			if(includeUnranked || ranks.containsKey(node)) {
+				sorted.add(node);
+			}
+		}
+		sorted.sort(Comparator.comparingInt(this::getRank));
+		return sorted;
+	}
+	
+}
@@ -4,11 +4,11 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
 
 import org.baderlab.autoannotate.internal.model.AnnotationSet;
 import org.baderlab.autoannotate.internal.model.Cluster;
@@ -18,19 +18,45 @@ import org.cytoscape.command.AvailableCommands;
 import org.cytoscape.command.CommandExecutorTaskFactory;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
+import org.cytoscape.model.CyTable;
+import org.cytoscape.model.events.ColumnCreatedEvent;
+import org.cytoscape.model.events.ColumnCreatedListener;
+import org.cytoscape.model.events.ColumnDeletedEvent;
+import org.cytoscape.model.events.ColumnDeletedListener;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedEvent;
+import org.cytoscape.model.events.NetworkAboutToBeDestroyedListener;
+import org.cytoscape.model.events.RowsSetEvent;
+import org.cytoscape.model.events.RowsSetListener;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
 import org.cytoscape.work.SynchronousTaskManager;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
+/**
+ * Looks up the most significant nodes of clusters, either from EnrichmentMap commands or from a significance column.
+ * <br>
+ * The results of the EnrichmentMap commands are cached per node table and command (which includes the
+ * network and data set), colors are cached per data set and node, so repeated renders don't go back to the command layer.
+ * Significance is looked up through a {@link SignificanceIndex} that ranks all the nodes of the network once,
+ * indexes are cached along with the command results.
+ * The cache for a network is cleared when EnrichmentMap columns or indexed significance columns 
+ * in its node table are created, deleted or set.
+ */
 @Singleton
-public class SignificanceLookup {
+public class SignificanceLookup implements RowsSetListener, ColumnCreatedListener, ColumnDeletedListener, NetworkAboutToBeDestroyedListener {
+	
+	private static final String EM_NAMESPACE = "EnrichmentMap::";
 	
 	@Inject private CommandExecutorTaskFactory commandTaskFactory;
 	@Inject private SynchronousTaskManager<?> syncTaskManager;
 	@Inject private AvailableCommands availableCommands;
 	
+	// node table -> command or index key -> result
+	private final Map<CyTable,Map<Object,Object>> cache = new HashMap<>();
+	// node table -> number of times its cache was cleared, guarded by the cache lock
+	private final Map<CyTable,Long> generations = new WeakHashMap<>();
+	
 	
 	public Map<Cluster,Color> getColors(AnnotationSet annotationSet) {
 		if(useEM(annotationSet))
@@ -53,6 +79,18 @@ public class SignificanceLookup {
 			return getNodesSortedBySignificanceColumn(cluster);
 	}
 	
+	/**
+	 * Returns the index that {@link #getNodesSortedBySignificance(Cluster)} uses for the clusters of the annotation set,
+	 * or null if significance is not available. A different instance is returned after the cache has been cleared.
+	 */
+	SignificanceIndex getSignificanceIndex(AnnotationSet annotationSet) {
+		if(useEM(annotationSet))
+			return getSignificanceIndexEM(annotationSet);
+		var sigOptions = annotationSet.getDisplayOptions().getSignificanceOptions();
+		var network = annotationSet.getParent().getNetwork();
+		return getSignificanceIndexColumn(network, sigOptions.getSignificance(), sigOptions.getSignificanceColumn());
+	}
+	
 	public boolean useEM(AnnotationSet annotationSet) {
 		var sigOptions = annotationSet.getDisplayOptions().getSignificanceOptions();
 		var network = annotationSet.getParent().getNetwork();
@@ -92,33 +130,35 @@ public class SignificanceLookup {
 		if(dataSet != null)
 			command += " dataSet=\"" + dataSet + "\"";
 		
-		List<CyNode> nodesSortedBySig = runListCommand(command);
+		List<CyNode> nodesSortedBySig = runCachedListCommand(annotationSet.getParent().getNetwork(), command);
 		return nodesSortedBySig == null ? Collections.emptyList() : nodesSortedBySig;
 	}
 	
 	
+	private SignificanceIndex getSignificanceIndexEM(AnnotationSet annotationSet) {
+		var network = annotationSet.getParent().getNetwork();
+		var dataSet = annotationSet.getDisplayOptions().getSignificanceOptions().getEMDataSet();
+		return getCached(network, List.of("em", String.valueOf(dataSet)), () -> 
+			SignificanceIndex.fromSortedNodes(getNodesSortedBySignificanceEM(annotationSet))
+		);
+	}
+	
+	
 	private List<CyNode> getNodesSortedBySignificanceEM(Cluster cluster) {
-		var annotationSet = cluster.getParent();
-		var clusterNodes = cluster.getNodes();
-		
-		var nodesSortedBySig = getNodesSortedBySignificanceEM(annotationSet);
-		
-		return nodesSortedBySig.stream()
-			.filter(clusterNodes::contains)
-			.collect(Collectors.toList());
+		var index = getSignificanceIndexEM(cluster.getParent());
+		return index.sort(cluster.getNodes(), false);
 	}
 	
 	
 	private Map<Cluster,CyNode> getMostSignificantNodeInEachClusterEM(AnnotationSet annotationSet) {
-		var nodesSortedBySig = getNodesSortedBySignificanceEM(annotationSet);
+		var index = getSignificanceIndexEM(annotationSet);
 		
 		Map<Cluster,CyNode> sigNodes = new HashMap<>();
 		
 		for(var cluster : annotationSet.getClusters()) {
-			var clusterNodes = cluster.getNodes();
-			var mostSigNode = nodesSortedBySig.stream().filter(n -> clusterNodes.contains(n)).findFirst();
-			if(mostSigNode.isPresent()) {
-				sigNodes.put(cluster, mostSigNode.get());
+			var mostSigNode = index.getMostSignificant(cluster.getNodes(), false);
+			if(mostSigNode != null) {
+				sigNodes.put(cluster, mostSigNode);
 			}
 		}
 		
@@ -127,29 +167,35 @@ public class SignificanceLookup {
 	
 	
 	private Map<Cluster,Color> getColorsFromEM(AnnotationSet annotationSet) {
-		var suid = annotationSet.getParent().getNetwork().getSUID();
+		var network = annotationSet.getParent().getNetwork();
+		var nodeTable = network.getDefaultNodeTable();
+		String dataSet = annotationSet.getDisplayOptions().getSignificanceOptions().getEMDataSet();
 		
 		Map<Cluster,CyNode> sigNodes = getMostSignificantNodeInEachClusterEM(annotationSet);
+		Map<Cluster,Color> colors = new HashMap<>();
 		
-		// Need to maintain some order for the clusters, it can be arbitrary but it needs to be maintained for this method.
-		List<Cluster> clusters = new ArrayList<>(annotationSet.getClusters());
-		List<String> nodeSuids = new ArrayList<>(clusters.size());
-		
-		var iter = clusters.iterator();
-		while(iter.hasNext()) {
-			var cluster = iter.next();
+		// Colors are cached per node so that the cache doesn't grow with every different set of clusters,
+		// only the nodes whose color is not known yet are sent to EnrichmentMap.
+		long generation = getGeneration(nodeTable);
+		List<Cluster> clusters = new ArrayList<>();
+		List<String> nodeSuids = new ArrayList<>();
+		for(var cluster : annotationSet.getClusters()) {
 			CyNode sigNode = sigNodes.get(cluster);
-			if(sigNode == null) {
-				iter.remove();
+			if(sigNode == null)
+				continue;
+			Color color = getCachedValue(nodeTable, colorKey(dataSet, sigNode));
+			if(color != null) {
+				colors.put(cluster, color);
 			} else {
+				clusters.add(cluster);
 				nodeSuids.add(sigNode.getSUID().toString());
 			}
 		}
-		
-		String dataSet = annotationSet.getDisplayOptions().getSignificanceOptions().getEMDataSet();
+		if(clusters.isEmpty())
+			return colors;
 		
 		String suids = String.join(",", nodeSuids);
-		String command = "enrichmentmap get colors network=\"SUID:" + suid + "\" nodes=\"" + suids + "\"";
+		String command = "enrichmentmap get colors network=\"SUID:" + network.getSUID() + "\" nodes=\"" + suids + "\"";
 		if(dataSet != null)
 			command += " dataSet=\"" + dataSet + "\"";
 			
@@ -157,20 +203,23 @@ public class SignificanceLookup {
 		if(encodedColors == null || encodedColors.size() != clusters.size())
 			return Collections.emptyMap();
 		
-		Map<Cluster,Color> colors = new HashMap<>();
-		
 		for(int i = 0; i < clusters.size(); i++) {
 			var cluster = clusters.get(i);
 			var encoded = encodedColors.get(i);
 			try {
 				var color = Color.decode(encoded);
 				colors.put(cluster, color);
+				putCachedValue(nodeTable, colorKey(dataSet, sigNodes.get(cluster)), color, generation);
 			} catch(NumberFormatException | NullPointerException e) {}
 		}
 		
 		return colors;
 	}
 	
+	private static Object colorKey(String dataSet, CyNode node) {
+		return List.of("color", String.valueOf(dataSet), node.getSUID());
+	}
+	
 	
 	@SuppressWarnings("unchecked")
 	private <T> List<T> runListCommand(CharSequence command) {
@@ -180,6 +229,125 @@ public class SignificanceLookup {
 		return observer.getResult();
 	}
 	
+	/**
+	 * Same as runListCommand() but returns the cached result if the command was already run and 
+	 * the EnrichmentMap columns of the network have not changed since.
+	 */
+	private <T> List<T> runCachedListCommand(CyNetwork network, String command) {
+		List<T> result = getCached(network, command, () -> {
+			List<T> list = runListCommand(command);
+			return list == null ? null : Collections.unmodifiableList(list);
+		});
+		return result;
+	}
+	
+	/**
+	 * Returns the cached value for the key, computing it if necessary. Null values are not cached.
+	 */
+	private <T> T getCached(CyNetwork network, Object key, Supplier<T> supplier) {
+		var nodeTable = network.getDefaultNodeTable();
+		long generation = getGeneration(nodeTable);
+		T value = getCachedValue(nodeTable, key);
+		if(value != null)
+			return value;
+		
+		value = supplier.get(); // may run a command, don't hold the lock
+		if(value != null)
+			putCachedValue(nodeTable, key, value, generation);
+		return value;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private <T> T getCachedValue(CyTable nodeTable, Object key) {
+		synchronized(cache) {
+			var values = cache.get(nodeTable);
+			return values == null ? null : (T) values.get(key);
+		}
+	}
+	
+	/**
+	 * Caches the value unless the cache of the table was cleared after the generation was read,
+	 * in which case the value may have been computed from stale data.
+	 */
+	private void putCachedValue(CyTable nodeTable, Object key, Object value, long generation) {
+		synchronized(cache) {
+			if(getGeneration(nodeTable) == generation) {
+				cache.computeIfAbsent(nodeTable, k -> new HashMap<>()).put(key, value);
+			}
+		}
+	}
+	
+	private long getGeneration(CyTable nodeTable) {
+		synchronized(cache) {
+			return generations.getOrDefault(nodeTable, 0L);
+		}
+	}
+	
+	private void invalidate(CyTable table) {
+		synchronized(cache) {
+			cache.remove(table);
+			generations.merge(table, 1L, Long::sum);
+		}
+	}
+	
+	/**
+	 * Returns true if changes to the column must clear the cache of the table.
+	 */
+	private boolean isTracked(CyTable table, String column) {
+		if(column == null)
+			return false;
+		if(column.startsWith(EM_NAMESPACE))
+			return true;
+		synchronized(cache) {
+			var values = cache.get(table);
+			if(values != null) {
+				for(var key : values.keySet()) {
+					if(key instanceof List && ((List<?>)key).get(0).equals("column") && ((List<?>)key).get(1).equals(column)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+	
+	private boolean isCached(CyTable table) {
+		synchronized(cache) {
+			return cache.containsKey(table);
+		}
+	}
+	
+	
+	@Override
+	public void handleEvent(RowsSetEvent e) {
+		var table = e.getSource();
+		if(!isCached(table))
+			return;
+		for(var column : e.getColumns()) {
+			if(isTracked(table, column)) {
+				invalidate(table);
+				return;
+			}
+		}
+	}
+	
+	@Override
+	public void handleEvent(ColumnCreatedEvent e) {
+		if(isTracked(e.getSource(), e.getColumnName()))
+			invalidate(e.getSource());
+	}
+	
+	@Override
+	public void handleEvent(ColumnDeletedEvent e) {
+		if(isTracked(e.getSource(), e.getColumnName()))
+			invalidate(e.getSource());
+	}
+	
+	@Override
+	public void handleEvent(NetworkAboutToBeDestroyedEvent e) {
+		invalidate(e.getNetwork().getDefaultNodeTable());
+	}
+	
 	
 	private Map<Cluster,CyNode> getMostSignificantNodeInEachClusterColumns(AnnotationSet annotationSet) {
 		Map<Cluster,CyNode> sigNodes = new HashMap<>();
@@ -195,38 +363,28 @@ public class SignificanceLookup {
 	}
 	
 	
+	private SignificanceIndex getSignificanceIndexColumn(CyNetwork network, Significance sigOp, String sigCol) {
+		if(sigOp == null || sigCol == null)
+			return null;
+		return getCached(network, List.of("column", sigCol, sigOp), () -> 
+			SignificanceIndex.fromColumn(network, sigCol, sigOp)
+		);
+	}
+	
+	
 	private List<CyNode> sortNodesBySignificanceColumn(Collection<CyNode> nodes, CyNetwork network, Significance sigOp, String sigCol) {
-		if(sigOp == null || sigCol == null || nodes == null || nodes.isEmpty())
+		if(nodes == null || nodes.isEmpty())
 			return null;
-		
-		var nodeTable = network.getDefaultNodeTable();
-		var column = nodeTable.getColumn(sigCol);
-		if(column == null)
+		var index = getSignificanceIndexColumn(network, sigOp, sigCol);
+		if(index == null)
 			return null;
-		
-		Map<CyNode, Number> sigValues = new HashMap<>();
-		for(var node : nodes) {
-			var value = (Number) network.getRow(node).get(sigCol, column.getType());
-			if(value != null) {
-				sigValues.put(node, value);
-			}
-		}
-		
-		var sortedNodes = new ArrayList<>(nodes);
-		sortedNodes.sort(Comparator.comparing(sigValues::get, sigOp.comparator()));
-		return sortedNodes;
+		return index.sort(nodes, true);
 	}
 	
 	
 	private List<CyNode> getNodesSortedBySignificanceColumn(Cluster cluster) {
 		var sigOptions = cluster.getParent().getDisplayOptions().getSignificanceOptions();
-		var network = cluster.getNetwork();
-		var nodes = new ArrayList<>(cluster.getNodes());
-		
-		var sigOp  = sigOptions.getSignificance();
-		var sigCol = sigOptions.getSignificanceColumn();
-		
-		return sortNodesBySignificanceColumn(nodes, network, sigOp, sigCol);
+		return sortNodesBySignificanceColumn(cluster.getNodes(), cluster.getNetwork(), sigOptions.getSignificance(), sigOptions.getSignificanceColumn());
 	}
 	
 	
@@ -235,11 +393,23 @@ public class SignificanceLookup {
 	}
 	
 	
-	private CyNode getMostSignificantNodeByColumn(Cluster cluster) {
-		var nodes = getNodesSortedBySignificance(cluster);
+	/**
+	 * Returns the most significant of the given nodes according to the significance column, 
+	 * or null if the column does not exist. Runs in O(n) once the column has been indexed.
+	 */
+	public CyNode getMostSignificantNodeByColumn(Collection<CyNode> nodes, CyNetwork network, Significance sigOp, String sigCol) {
 		if(nodes == null || nodes.isEmpty())
 			return null;
-		return nodes.get(0);
+		var index = getSignificanceIndexColumn(network, sigOp, sigCol);
+		if(index == null)
+			return null;
+		return index.getMostSignificant(nodes, true);
+	}
+	
+	
+	private CyNode getMostSignificantNodeByColumn(Cluster cluster) {
+		var sigOptions = cluster.getParent().getDisplayOptions().getSignificanceOptions();
+		return getMostSignificantNodeByColumn(cluster.getNodes(), cluster.getNetwork(), sigOptions.getSignificance(), sigOptions.getSignificanceColumn());
 	}
 	
 	
@@ -1,13 +1,22 @@
 package org.baderlab.autoannotate.internal.ui.render;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.NetworkViewSet;
 import org.baderlab.autoannotate.internal.util.TaskTools.AbstractTaskObserver;
+import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.work.FinishStatus;
 import org.cytoscape.work.SynchronousTaskManager;
 import org.cytoscape.work.Task;
@@ -15,14 +24,97 @@ import org.cytoscape.work.TaskIterator;
 import org.cytoscape.work.swing.DialogTaskManager;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
+/**
+ * Runs the rendering tasks of the AnnotationRenderer one at a time on a background thread.
+ * <br>
+ * Work is tagged with the NetworkViewSet it applies to and its {@link Kind}. Pending work that
+ * is made redundant by newer work for the same NetworkViewSet is dropped, because the render
+ * tasks reconcile the annotations with the current state of the model the newer work will do
+ * everything the older work would have done. Trailing {@link UpdateNetworkViewTask}s are merged
+ * when the next piece of work updates the same network view anyway. Selection updates
+ * are run before other pending work so that the UI stays responsive during bulk redraws, but
+ * never ahead of pending work that draws or erases annotations for the same NetworkViewSet.
+ */
+@Singleton
 public class TaskQueue {
 	
+	public static enum Kind {
+		/** Reconciles all the annotations of a NetworkViewSet, supersedes pending REDRAW, UPDATE and VISIBILITY work. */
+		REDRAW,
+		/** Reconciles the annotations of some clusters, supersedes pending UPDATEs for a subset of the clusters. */
+		UPDATE,
+		/** Applies the visibility mapping, supersedes pending VISIBILITY work. */
+		VISIBILITY,
+		/** Updates the annotations of clusters that were (de)selected, runs before pending work for other NetworkViewSets. */
+		SELECTION,
+		/** Never superseded. */
+		OTHER
+	}
+	
+	
 	@Inject private DialogTaskManager dialogTaskManager;
 	@Inject private SynchronousTaskManager<?> syncTaskManager;
 	
 	private final ExecutorService executor;
-
+	
+	private final Deque<Job> priority = new ArrayDeque<>();
+	private final Deque<Job> pending = new ArrayDeque<>();
+	private boolean scheduled = false;
+	private long droppedCount = 0;
+	
+	
+	private static class Job {
+		final Kind kind;
+		final NetworkViewSet nvs;
+		final Set<Cluster> clusters;
+		final List<Task> tasks;
+		final boolean sync;
+		final List<CompletableFuture<Void>> futures = new ArrayList<>(1);
+		CyNetworkView updateView; // trailing UpdateNetworkViewTask
+		
+		Job(Kind kind, NetworkViewSet nvs, Collection<Cluster> clusters, List<Task> tasks, boolean sync) {
+			this.kind = kind;
+			this.nvs = nvs;
+			this.clusters = clusters == null || clusters instanceof Set ? (Set<Cluster>) clusters : new HashSet<>(clusters);
+			this.sync = sync;
+			
+			if(!tasks.isEmpty() && tasks.get(tasks.size()-1) instanceof UpdateNetworkViewTask) {
+				updateView = ((UpdateNetworkViewTask)tasks.get(tasks.size()-1)).getNetworkView();
+				tasks = tasks.subList(0, tasks.size()-1);
+			}
+			this.tasks = tasks;
+		}
+		
+		boolean supersedes(Job older) {
+			if(nvs == null || nvs != older.nvs)
+				return false;
+			
+			switch(kind) {
+			case REDRAW:
+				return older.kind == Kind.REDRAW || older.kind == Kind.UPDATE || older.kind == Kind.VISIBILITY;
+			case UPDATE:
+			case SELECTION:
+				return older.kind == kind && clusters != null && older.clusters != null && clusters.containsAll(older.clusters);
+			case VISIBILITY:
+				return older.kind == Kind.VISIBILITY;
+			default:
+				return false;
+			}
+		}
+		
+		/**
+		 * Returns true if a SELECTION job must not run before this job, because this job may
+		 * draw or erase annotations the selection update would otherwise draw a second time.
+		 */
+		boolean blocks(Job selection) {
+			if(kind == Kind.VISIBILITY || kind == Kind.SELECTION)
+				return false;
+			return nvs == null || nvs == selection.nvs;
+		}
+	}
+	
 	
 	public TaskQueue() {
 		executor = Executors.newSingleThreadExecutor(runnable -> {
@@ -32,41 +124,135 @@ public class TaskQueue {
 		});
 	}
 	
-	public Future<?> submit(TaskIterator tasks, boolean sync) {
-		if(tasks.getNumTasks() == 0)
+	
+	/**
+	 * Submits rendering work.
+	 * @param kind what the tasks do, used to find pending work that is superseded by these tasks
+	 * @param nvs the NetworkViewSet the tasks apply to, or null if the tasks should never supersede or be superseded
+	 * @param clusters the clusters the tasks update, required for UPDATE and SELECTION
+	 * @return a Future that completes when the tasks, or the work that superseded them, have run
+	 */
+	public Future<?> submit(Kind kind, NetworkViewSet nvs, Collection<Cluster> clusters, Collection<? extends Task> tasks, boolean sync) {
+		if(tasks.isEmpty())
 			return CompletableFuture.completedFuture(null);
 		
-		return executor.submit(() -> {
-			if(sync) {
-				syncTaskManager.execute(tasks);
-			} else {
-				var latch = new CountDownLatch(1);
-				
-				dialogTaskManager.execute(tasks, new AbstractTaskObserver() {
-					@Override
-					public void allFinished(FinishStatus finishStatus) {
-						latch.countDown();
-					}
-				});
-				
-				try {
-					latch.await();
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+		Job job = new Job(kind, nvs, clusters, new ArrayList<>(tasks), sync);
+		var future = new CompletableFuture<Void>();
+		job.futures.add(future);
+		
+		synchronized(this) {
+			drop(priority, job);
+			drop(pending, job);
+			
+			if(kind == Kind.SELECTION && pending.stream().noneMatch(older -> older.blocks(job)))
+				priority.add(job);
+			else
+				pending.add(job);
+			
+			if(!scheduled) {
+				scheduled = true;
+				executor.execute(this::drain);
 			}
-		});
+		}
+		return future;
 	}
 	
 	
+	public Future<?> submit(Kind kind, NetworkViewSet nvs, Task task, boolean sync) {
+		return submit(kind, nvs, null, List.of(task), sync);
+	}
+	
+	public Future<?> submit(TaskIterator tasks, boolean sync) {
+		var list = new ArrayList<Task>(tasks.getNumTasks());
+		while(tasks.hasNext()) {
+			list.add(tasks.next());
+		}
+		return submit(Kind.OTHER, null, null, list, sync);
+	}
+	
 	public Future<?> submit(Collection<Task> tasks, boolean sync) {
-		var taskIterator = new TaskIterator();
-		tasks.forEach(taskIterator::append);
-		return submit(taskIterator, sync);
+		return submit(Kind.OTHER, null, null, tasks, sync);
 	}
 	
 	public Future<?> submit(Task task, boolean sync) {
-		var taskIterator = new TaskIterator(task);
-		return submit(taskIterator, sync);
+		return submit(Kind.OTHER, null, task, sync);
+	}
+	
+	
+	private void drop(Deque<Job> queue, Job job) {
+		queue.removeIf(older -> {
+			if(!job.supersedes(older))
+				return false;
+			job.futures.addAll(older.futures);
+			if(job.updateView == null)
+				job.updateView = older.updateView;
+			droppedCount++;
+			return true;
+		});
+	}
+	
+	
+	private void drain() {
+		while(true) {
+			Job job;
+			synchronized(this) {
+				job = priority.isEmpty() ? pending.poll() : priority.poll();
+				if(job == null) {
+					scheduled = false;
+					return;
+				}
+			}
+			
+			try {
+				if(!job.tasks.isEmpty())
+					execute(new TaskIterator(job.tasks.toArray(new Task[job.tasks.size()])), job.sync);
+				
+				if(job.updateView != null && !isNextUpdating(job.updateView))
+					job.updateView.updateView();
+				
+				job.futures.forEach(f -> f.complete(null));
+			} catch(Exception e) {
+				job.futures.forEach(f -> f.completeExceptionally(e));
+			}
+		}
+	}
+	
+	
+	/**
+	 * Returns true if the next piece of work will update the given network view when it finishes.
+	 */
+	private synchronized boolean isNextUpdating(CyNetworkView netView) {
+		Job next = priority.isEmpty() ? pending.peek() : priority.peek();
+		return next != null && next.updateView == netView;
+	}
+	
+	
+	private void execute(TaskIterator tasks, boolean sync) {
+		if(sync) {
+			syncTaskManager.execute(tasks);
+		} else {
+			var latch = new CountDownLatch(1);
+			
+			dialogTaskManager.execute(tasks, new AbstractTaskObserver() {
+				@Override
+				public void allFinished(FinishStatus finishStatus) {
+					latch.countDown();
+				}
+			});
+			
+			try {
+				latch.await();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	
+	/**
+	 * The number of pieces of work that were dropped because they were superseded.
+	 */
+	public synchronized long getDroppedCount() {
+		return droppedCount;
 	}
 }
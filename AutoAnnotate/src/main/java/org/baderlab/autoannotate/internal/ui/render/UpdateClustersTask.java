@@ -1,16 +1,26 @@
 package org.baderlab.autoannotate.internal.ui.render;
 
 import java.awt.Color;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.baderlab.autoannotate.internal.BuildProperties;
 import org.baderlab.autoannotate.internal.model.AnnotationSet;
 import org.baderlab.autoannotate.internal.model.Cluster;
 import org.baderlab.autoannotate.internal.model.DisplayOptions.FillType;
-import org.baderlab.autoannotate.internal.util.HiddenTools;
+import org.baderlab.autoannotate.internal.model.SignificanceOptions.Highlight;
+import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.presentation.annotations.Annotation;
+import org.cytoscape.view.presentation.annotations.AnnotationFactory;
+import org.cytoscape.view.presentation.annotations.AnnotationManager;
 import org.cytoscape.view.presentation.annotations.TextAnnotation;
 import org.cytoscape.view.vizmap.VisualMappingManager;
 import org.cytoscape.work.AbstractTask;
@@ -20,15 +30,27 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
+/**
+ * Brings the annotations of the given clusters up to date by diffing the target
+ * ArgsShape/ArgsLabel values against the values last applied to the AnnotationGroup of each cluster.
+ * Existing annotations are updated in place, only the labels that were added or removed
+ * (e.g. because of word wrap) are created or deleted. Clusters that don't have annotations
+ * yet are passed to a DrawClustersTask and clusters that should no longer be drawn
+ * (collapsed, all nodes hidden, outside the viewport) are passed to an EraseClustersTask.
+ */
 public class UpdateClustersTask extends AbstractTask {
-
+	
 	@Inject private AnnotationRenderer annotationRenderer;
 	@Inject private DrawClustersTask.Factory drawTaskProvider;
 	@Inject private EraseClustersTask.Factory eraseTaskProvider;
 	@Inject private VisualMappingManager visualMappingManager;
 	@Inject private SignificanceLookup significanceLookup;
+	@Inject private AnnotationFactory<TextAnnotation> textFactory;
+	@Inject private AnnotationManager annotationManager;
+	@Inject private ViewportCuller viewportCuller;
 	
 	private final Collection<Cluster> clusters;
+	private boolean removeOrphans = false;
 	
 	public static interface Factory {
 		UpdateClustersTask create(Collection<Cluster> clusters);
@@ -39,6 +61,14 @@ public class UpdateClustersTask extends AbstractTask {
 		this.clusters = clusters;
 	}
 	
+	/**
+	 * If true then AutoAnnotate annotations in the network view that don't belong to any
+	 * cluster are removed. These "ghost" annotations can be left behind due to bugs in Cytoscape.
+	 */
+	public void setRemoveOrphans(boolean removeOrphans) {
+		this.removeOrphans = removeOrphans;
+	}
+	
 	
 	@Override
 	public void run(TaskMonitor taskMonitor) {
@@ -48,80 +78,114 @@ public class UpdateClustersTask extends AbstractTask {
 		if(clusters.isEmpty())
 			return;
 		
-		if(clusters.size() == 1) {
-			// If we are updating one cluster then its better to try to update the existing annotations, there is less flicker.
-			// Often happens when the user selects a cluster, changes a cluster's label, etc...
-			boolean updated = maybeUpdateOneCluster(clusters.iterator().next());
-			if(!updated) {
-				redraw(clusters);
-			}
-		} else {
-			// But if we are updating lots of clusters its actually much faster to just redraw them.
-			redraw(clusters);
-		}
-	}
-	
-	
-	private boolean maybeUpdateOneCluster(Cluster cluster) {
-		if(cluster.isCollapsed() || HiddenTools.hasHiddenNodes(cluster)) {
-			return false;
-		}
+		AnnotationSet as = clusters.iterator().next().getParent(); // Assume all clusters are from the same annotation set
+		CyNetworkView netView = as.getParent().getNetworkView();
+		Color selection = DrawClustersTask.getSelectionColor(visualMappingManager, netView);
+		Map<Cluster,Color> sigColors = getSignificanceColors(as);
+		Map<Cluster,CyNode> sigNodes = getSignificantNodes(as);
+		Rectangle2D cullingArea = viewportCuller.getCullingArea(as);
+		boolean showLabels = viewportCuller.isShowLabels(netView);
 		
-		AnnotationGroup group = annotationRenderer.getAnnotations(cluster);
-		if(group != null) {
-			CyNetworkView netView = cluster.getParent().getParent().getNetworkView();
-			boolean isSelected = annotationRenderer.isSelected(cluster);
-			Color selection = DrawClustersTask.getSelectionColor(visualMappingManager, netView);
-			
-			Map<Cluster,Color> sigColors = getSignificanceColors();
-			ArgsShape argsShape = ArgsShape.createFor(cluster, isSelected, selection, sigColors);
-			List<ArgsLabel> argsLabels = ArgsLabel.createFor(argsShape, cluster, isSelected, selection);
+		List<Cluster> toDraw = new ArrayList<>();
+		List<Cluster> toErase = new ArrayList<>();
+		List<Annotation> labelsToAdd = new ArrayList<>();
+		List<Annotation> labelsToRemove = new ArrayList<>();
+		
+		for(Cluster cluster : clusters) {
+			AnnotationGroup group = annotationRenderer.getAnnotations(cluster);
+			boolean visible = !cluster.isCollapsed() && cluster.getBounds(false).getNodeCount() > 0 && ViewportCuller.intersects(cullingArea, cluster);
 			
-			if(isUpdatePossible(group.getLabels(), argsLabels)) {
-				argsShape.updateAnnotation(group.getShape());
-				for(int i = 0; i < argsLabels.size(); i++) {
-					TextAnnotation text = group.getLabels().get(i);
-					ArgsLabel args = argsLabels.get(i);
-					args.updateAnnotation(text);
+			if(!visible) {
+				if(group != null)
+					toErase.add(cluster);
+			} else if(group == null) {
+				toDraw.add(cluster);
+			} else {
+				boolean isSelected = annotationRenderer.isSelected(cluster);
+				ArgsShape argsShape = ArgsShape.createFor(cluster, isSelected, selection, sigColors);
+				List<ArgsLabel> argsLabels = showLabels ? ArgsLabel.createFor(argsShape, cluster, isSelected, selection) : List.of();
+				
+				group.updateShape(argsShape);
+				
+				List<TextAnnotation> labels = group.getLabels();
+				int common = Math.min(labels.size(), argsLabels.size());
+				for(int i = 0; i < common; i++) {
+					group.updateLabel(i, argsLabels.get(i));
+				}
+				
+				if(labels.size() != argsLabels.size()) {
+					List<TextAnnotation> newLabels = new ArrayList<>(labels.subList(0, common));
+					labelsToRemove.addAll(labels.subList(common, labels.size()));
+					for(ArgsLabel args : argsLabels.subList(common, argsLabels.size())) {
+						TextAnnotation text = textFactory.createAnnotation(TextAnnotation.class, netView, args.getArgMap());
+						newLabels.add(text);
+						labelsToAdd.add(text);
+					}
+					annotationRenderer.replaceAnnotations(cluster, new AnnotationGroup(group.getShape(), newLabels, argsShape, argsLabels));
 				}
-				return true;
+				
+				updateHighlight(cluster, sigNodes);
 			}
 		}
 		
-		return false;
+		if(!labelsToRemove.isEmpty())
+			annotationManager.removeAnnotations(labelsToRemove);
+		if(!labelsToAdd.isEmpty())
+			annotationManager.addAnnotations(labelsToAdd);
+		
+		if(removeOrphans)
+			removeOrphans(netView);
+		
+		if(!toErase.isEmpty() || !toDraw.isEmpty()) {
+			EraseClustersTask eraseTask = eraseTaskProvider.create(toErase);
+			DrawClustersTask drawTask = drawTaskProvider.create(toDraw);
+			insertTasksAfterCurrentTask(eraseTask, drawTask);
+		}
+	}
+	
+	
+	private void updateHighlight(Cluster cluster, Map<Cluster,CyNode> sigNodes) {
+		CyNode sigNode = sigNodes.get(cluster);
+		Long current = cluster.getHighlightedNode();
+		Long target = sigNode == null ? null : sigNode.getSUID();
+		
+		if(current != null && !current.equals(target))
+			EraseClustersTask.clearHighlight(cluster);
+		if(sigNode != null && !sigNode.getSUID().equals(current))
+			DrawClustersTask.highlightLabel(cluster, sigNode);
 	}
 	
 	
-	private static boolean isUpdatePossible(List<TextAnnotation> textAnnotations, List<ArgsLabel> labelArgs) {
-		// There has to be the same number of label annotations in order to do an update.
-		if(textAnnotations.size() != labelArgs.size())
-			return false;
-		for(int i = 0; i < textAnnotations.size(); i++) {
-			String annotationText = textAnnotations.get(i).getText();
-			String argsText = labelArgs.get(i).label;
-			if(!annotationText.equals(argsText)) {
-				return false;
+	private void removeOrphans(CyNetworkView netView) {
+		Set<Annotation> tracked = Collections.newSetFromMap(new IdentityHashMap<>());
+		for(AnnotationGroup group : annotationRenderer.getAnnotationGroups()) {
+			tracked.addAll(group.getAnnotations());
+		}
+		
+		Set<Annotation> orphans = new HashSet<>();
+		for(Annotation a : annotationManager.getAnnotations(netView)) {
+			String name = a.getName();
+			if(name != null && name.startsWith(ArgsLabel.ANNOTATION_NAME_PREFIX) && !tracked.contains(a)) {
+				orphans.add(a);
 			}
-		}		
-		return true;
+		}
+		if(!orphans.isEmpty())
+			annotationManager.removeAnnotations(orphans);
 	}
 	
-	private Map<Cluster,Color> getSignificanceColors() {
-		// Assume all clusters are from the same annotation set
-		AnnotationSet as = clusters.iterator().next().getParent();
+	
+	private Map<Cluster,Color> getSignificanceColors(AnnotationSet as) {
 		if(as.getDisplayOptions().getFillType() == FillType.SIGNIFICANT) {
 			return significanceLookup.getColors(as);
 		}
 		return null;
 	}
 	
-	
-	private void redraw(Collection<Cluster> clusters) {
-		if(!clusters.isEmpty()) {
-			EraseClustersTask eraseTask = eraseTaskProvider.create(clusters);
-			DrawClustersTask drawTask = drawTaskProvider.create(clusters);
-			insertTasksAfterCurrentTask(eraseTask, drawTask);
+	private Map<Cluster,CyNode> getSignificantNodes(AnnotationSet as) {
+		if(as.getDisplayOptions().getSignificanceOptions().getHighlight() == Highlight.BOLD_LABEL) {
+			return significanceLookup.getMostSignificantNodes(as);
 		}
+		return Collections.emptyMap();
 	}
 	
 }
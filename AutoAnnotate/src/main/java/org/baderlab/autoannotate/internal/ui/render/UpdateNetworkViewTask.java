@@ -13,6 +13,10 @@ public class UpdateNetworkViewTask extends AbstractTask {
 		this.networkView = networkView;
 	}
 
+	CyNetworkView getNetworkView() {
+		return networkView;
+	}
+	
 	@Override
 	public void run(TaskMonitor tm) {
 		if(networkView != null)
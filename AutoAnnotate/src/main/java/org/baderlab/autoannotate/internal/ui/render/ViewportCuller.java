@@ -0,0 +1,164 @@
+package org.baderlab.autoannotate.internal.ui.render;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NETWORK_CENTER_X_LOCATION;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NETWORK_CENTER_Y_LOCATION;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NETWORK_HEIGHT;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NETWORK_SCALE_FACTOR;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NETWORK_WIDTH;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.baderlab.autoannotate.internal.Setting;
+import org.baderlab.autoannotate.internal.SettingManager;
+import org.baderlab.autoannotate.internal.model.AnnotationSet;
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.CoordinateData;
+import org.baderlab.autoannotate.internal.model.ModelManager;
+import org.baderlab.autoannotate.internal.model.NetworkViewSet;
+import org.cytoscape.event.DebounceTimer;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.VisualProperty;
+import org.cytoscape.view.model.events.ViewChangeRecord;
+import org.cytoscape.view.model.events.ViewChangedEvent;
+import org.cytoscape.view.model.events.ViewChangedListener;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Tracks the visible area and zoom level of network views so that annotations are only
+ * created for the clusters that are on screen, and labels are not created when zoomed
+ * too far out to read them.
+ * <br>
+ * Culling is opt-in, it only applies to annotation sets that have at least {@link Setting#CULL_MIN_CLUSTERS} clusters,
+ * labels are hidden below the scale factor {@link Setting#LABEL_MIN_ZOOM}.
+ */
+@Singleton
+public class ViewportCuller implements ViewChangedListener {
+	
+	/** The culling area extends past each side of the viewport by this fraction of its size. */
+	private static final double MARGIN = 0.25;
+	
+	private static final Set<VisualProperty<?>> VIEWPORT_PROPS = Set.of(
+		NETWORK_CENTER_X_LOCATION, NETWORK_CENTER_Y_LOCATION, NETWORK_WIDTH, NETWORK_HEIGHT, NETWORK_SCALE_FACTOR
+	);
+	
+	@Inject private ModelManager modelManager;
+	@Inject private SettingManager settingManager;
+	@Inject private Provider<AnnotationRenderer> rendererProvider;
+	
+	private final DebounceTimer debouncer = new DebounceTimer(100);
+	
+	// The label state the annotations were last drawn with
+	private final Map<CyNetworkView,Boolean> showLabels = new WeakHashMap<>();
+	
+	
+	/**
+	 * Returns the area of the network view (in network coordinates) that annotations should be
+	 * created for, or null if culling is disabled for the annotation set and all clusters should be drawn.
+	 */
+	public Rectangle2D getCullingArea(AnnotationSet annotationSet) {
+		int minClusters = settingManager.getValue(Setting.CULL_MIN_CLUSTERS);
+		if(minClusters <= 0 || annotationSet.getClusters().size() < minClusters)
+			return null;
+		
+		CyNetworkView netView = annotationSet.getParent().getNetworkView();
+		double scale  = getDouble(netView, NETWORK_SCALE_FACTOR);
+		double width  = getDouble(netView, NETWORK_WIDTH)  / scale;
+		double height = getDouble(netView, NETWORK_HEIGHT) / scale;
+		if(!(width > 0) || !(height > 0) || Double.isInfinite(width) || Double.isInfinite(height))
+			return null; // view not laid out yet
+		
+		double x = getDouble(netView, NETWORK_CENTER_X_LOCATION) - width  * (0.5 + MARGIN);
+		double y = getDouble(netView, NETWORK_CENTER_Y_LOCATION) - height * (0.5 + MARGIN);
+		return new Rectangle2D.Double(x, y, width * (1 + 2 * MARGIN), height * (1 + 2 * MARGIN));
+	}
+	
+	/**
+	 * Returns true if the cluster intersects the culling area, or if the area is null.
+	 */
+	public static boolean intersects(Rectangle2D area, Cluster cluster) {
+		if(area == null)
+			return true;
+		CoordinateData bounds = cluster.getBounds(false);
+		if(bounds.getNodeCount() == 0)
+			return false;
+		return bounds.getXmax() >= area.getMinX() && bounds.getXmin() <= area.getMaxX()
+			&& bounds.getYmax() >= area.getMinY() && bounds.getYmin() <= area.getMaxY();
+	}
+	
+	/**
+	 * Returns false if the network view is zoomed out too far for labels to be drawn.
+	 */
+	public boolean isShowLabels(CyNetworkView netView) {
+		double minZoom = settingManager.getValue(Setting.LABEL_MIN_ZOOM);
+		if(minZoom <= 0)
+			return true;
+		return getDouble(netView, NETWORK_SCALE_FACTOR) >= minZoom;
+	}
+	
+	
+	@Override
+	public void handleEvent(ViewChangedEvent<?> e) {
+		CyNetworkView netView = e.getSource();
+		if(!modelManager.hasAnnotations(netView))
+			return;
+		
+		for(ViewChangeRecord<?> record : e.getPayloadCollection()) {
+			if(record.getView() == netView && VIEWPORT_PROPS.contains(record.getVisualProperty())) {
+				debouncer.debounce(netView, () -> viewportChanged(netView));
+				return;
+			}
+		}
+	}
+	
+	
+	private void viewportChanged(CyNetworkView netView) {
+		var annotationSet = modelManager.getExistingNetworkViewSet(netView).flatMap(NetworkViewSet::getActiveAnnotationSet);
+		if(annotationSet.isEmpty())
+			return;
+		
+		AnnotationSet as = annotationSet.get();
+		AnnotationRenderer renderer = rendererProvider.get();
+		
+		boolean labels = isShowLabels(netView);
+		Boolean prevLabels;
+		synchronized(showLabels) {
+			prevLabels = showLabels.put(netView, labels);
+		}
+		
+		List<Cluster> clusters;
+		if(labels != (prevLabels == null || prevLabels)) { // annotations are drawn with labels until the first zoom out
+			clusters = new ArrayList<>(as.getClusters());
+		} else {
+			Rectangle2D area = getCullingArea(as);
+			if(area == null)
+				return;
+			
+			// Only the clusters that moved in or out of the culling area
+			clusters = new ArrayList<>();
+			for(Cluster cluster : as.getClusters()) {
+				boolean drawn = renderer.getAnnotations(cluster) != null;
+				if(drawn != (intersects(area, cluster) && !cluster.isCollapsed())) {
+					clusters.add(cluster);
+				}
+			}
+		}
+		
+		if(!clusters.isEmpty())
+			renderer.updateAnnotations(clusters);
+	}
+	
+	
+	private static double getDouble(CyNetworkView netView, VisualProperty<Double> vp) {
+		Double value = netView.getVisualProperty(vp);
+		return value == null ? 0 : value;
+	}
+	
+}
@@ -4,7 +4,7 @@ import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_V
 
 import org.baderlab.autoannotate.internal.CytoscapeServiceModule.Discrete;
 import org.baderlab.autoannotate.internal.model.NetworkViewSet;
-import org.baderlab.autoannotate.internal.util.HiddenTools;
+import org.baderlab.autoannotate.internal.model.VisibilityTracker;
 import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.view.model.CyNetworkView;
@@ -26,6 +26,7 @@ public class VisibilityClearTask extends AbstractTask {
 	@Inject private VisualMappingManager visualMappingManager;
 	@Inject private @Discrete VisualMappingFunctionFactory discreteMappingFactory;
 	@Inject private CyEventHelper eventHelper;
+	@Inject private VisibilityTracker visibilityTracker;
 	
 	private final NetworkViewSet networkViewSet;
 	
@@ -44,7 +45,9 @@ public class VisibilityClearTask extends AbstractTask {
 		var netView = networkViewSet.getNetworkView();
 		
 		// This task is heavyweight and causes lots of events to fire, don't run if not needed.
-		if(!HiddenTools.hasHiddenNodes(netView)) {
+		// The tracker is updated from view change events, flush them so it sees the latest visibility.
+		eventHelper.flushPayloadEvents();
+		if(!visibilityTracker.hasHiddenNodes(netView)) {
 			return;
 		}
 		
@@ -0,0 +1,76 @@
+package org.baderlab.autoannotate.internal.ui.render;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.baderlab.autoannotate.internal.model.AnnotationSet;
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.ModelEvents;
+import org.baderlab.autoannotate.internal.model.NodeSet;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.vizmap.mappings.DiscreteMapping;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Remembers the visibility mapping that VisibilityTask last installed for each annotation set,
+ * along with the significance order of each cluster and how many of its nodes were left visible.
+ * This allows a change to the visible percent to only update the nodes that cross the threshold.
+ * <br>
+ * The clusters reference their annotation set, so the state is removed explicitly when the annotation set is deleted.
+ */
+@Singleton
+class VisibilityState {
+	
+	static class State {
+		final DiscreteMapping<Long,Boolean> mapping;
+		final SignificanceIndex index;
+		final Map<Cluster,List<CyNode>> order = new HashMap<>();
+		final Map<Cluster,Integer> visibleCount = new HashMap<>();
+		final Map<Cluster,NodeSet> nodes = new HashMap<>(); // the NodeSet is immutable, a new instance means the nodes changed
+		
+		State(DiscreteMapping<Long,Boolean> mapping, SignificanceIndex index) {
+			this.mapping = mapping;
+			this.index = index;
+		}
+	}
+	
+	private final Map<AnnotationSet,State> states = new WeakHashMap<>();
+	
+	
+	@Inject
+	public void registerForEvents(EventBus eventBus) {
+		eventBus.register(this);
+	}
+	
+	@Subscribe
+	public void handle(ModelEvents.AnnotationSetDeleted event) {
+		remove(event.getAnnotationSet());
+	}
+	
+	@Subscribe
+	public void handle(ModelEvents.NetworkViewSetDeleted event) {
+		for(AnnotationSet as : event.getNetworkViewSet().getAnnotationSets()) {
+			remove(as);
+		}
+	}
+	
+	
+	synchronized State get(AnnotationSet annotationSet) {
+		return states.get(annotationSet);
+	}
+	
+	synchronized void put(AnnotationSet annotationSet, State state) {
+		states.put(annotationSet, state);
+	}
+	
+	synchronized void remove(AnnotationSet annotationSet) {
+		states.remove(annotationSet);
+	}
+	
+}
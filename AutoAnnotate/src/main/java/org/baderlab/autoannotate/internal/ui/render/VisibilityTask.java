@@ -1,16 +1,21 @@
 package org.baderlab.autoannotate.internal.ui.render;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.baderlab.autoannotate.internal.CytoscapeServiceModule.Discrete;
 import org.baderlab.autoannotate.internal.model.AnnotationSet;
+import org.baderlab.autoannotate.internal.model.Cluster;
 import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.view.model.events.ViewChangeRecord;
 import org.cytoscape.view.model.events.ViewChangedEvent;
 import org.cytoscape.view.presentation.property.BasicVisualLexicon;
-import org.cytoscape.view.vizmap.VisualMappingFunction;
 import org.cytoscape.view.vizmap.VisualMappingFunctionFactory;
 import org.cytoscape.view.vizmap.VisualMappingManager;
+import org.cytoscape.view.vizmap.VisualStyle;
 import org.cytoscape.view.vizmap.mappings.DiscreteMapping;
 import org.cytoscape.work.AbstractTask;
 import org.cytoscape.work.TaskMonitor;
@@ -19,6 +24,14 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 
+/**
+ * Hides the least significant nodes of each cluster according to the visible percent of the annotation set.
+ * <br>
+ * The mapping only has entries for hidden nodes, other nodes get the default NODE_VISIBLE value of the style.
+ * The significance order of each cluster is computed when the mapping is first installed, after that
+ * changing the visible percent only updates and re-applies the style to the nodes that cross the threshold.
+ * The mapping is rebuilt if the clusters, the significance index or the style mapping have changed since.
+ */
 public class VisibilityTask extends AbstractTask {
 
 	@Inject private VisualMappingManager visualMappingManager;
@@ -27,6 +40,7 @@ public class VisibilityTask extends AbstractTask {
 	
 	@Inject private SignificanceLookup significanceLookup;
 	@Inject private VisibilityClearTask.Factory visibilityClearTaskProvider;
+	@Inject private VisibilityState visibilityState;
 	
 	private final AnnotationSet annotationSet;
 	
@@ -44,18 +58,27 @@ public class VisibilityTask extends AbstractTask {
 	public void run(TaskMonitor tm) {
 		var netView = annotationSet.getParent().getNetworkView();
 		var visualStyle = visualMappingManager.getVisualStyle(netView);
-	
-		var mapping = createVisibilityMapping();
 		
-		if(mapping == null) {
+		float percentVisible = annotationSet.getDisplayOptions().getSignificanceOptions().getVisiblePercent() / 100.0f;
+		
+		if(percentVisible >= 1.0) {
+			visibilityState.remove(annotationSet);
 			var clearTask = visibilityClearTaskProvider.create(annotationSet.getParent());
 			insertTasksAfterCurrentTask(clearTask);
+			return;
+		}
+		
+		var state = visibilityState.get(annotationSet);
+		if(state != null && isCurrent(state, visualStyle)) {
+			updateVisibilityMapping(state, percentVisible, netView, visualStyle);
 		} else {
-			visualStyle.addVisualMappingFunction(mapping);
+			state = createVisibilityMapping(percentVisible);
+			visibilityState.put(annotationSet, state);
+			visualStyle.addVisualMappingFunction(state.mapping);
 			visualStyle.apply(netView);
-			
-			fireViewChangeEvent(netView);
 		}
+		
+		fireViewChangeEvent(netView);
 	}
 	
 	
@@ -67,43 +90,86 @@ public class VisibilityTask extends AbstractTask {
 	}
 	
 	
-	private VisualMappingFunction<Long,Boolean> createVisibilityMapping() {
-		float percentVisible = annotationSet.getDisplayOptions().getSignificanceOptions().getVisiblePercent() / 100.0f;
-		if(percentVisible >= 1.0)
-			return null;
+	private boolean isCurrent(VisibilityState.State state, VisualStyle visualStyle) {
+		if(visualStyle.getVisualMappingFunction(BasicVisualLexicon.NODE_VISIBLE) != state.mapping)
+			return false;
+		if(state.index != significanceLookup.getSignificanceIndex(annotationSet))
+			return false;
 		
+		var clusters = annotationSet.getClusters();
+		if(!state.order.keySet().equals(clusters))
+			return false;
+		for(var cluster : clusters) {
+			if(state.nodes.get(cluster) != cluster.getNodes())
+				return false;
+		}
+		return true;
+	}
+	
+	
+	private static int getVisibleCount(Cluster cluster, List<CyNode> sigNodes, float percentVisible) {
+		return Math.min(Math.round(cluster.getNodeCount() * percentVisible), sigNodes.size());
+	}
+	
+	
+	private VisibilityState.State createVisibilityMapping(float percentVisible) {
 		var mapping = (DiscreteMapping<Long,Boolean>) discreteMappingFactory
 				.createVisualMappingFunction(CyNetwork.SUID, Long.class, BasicVisualLexicon.NODE_VISIBLE);
 		
+		var state = new VisibilityState.State(mapping, significanceLookup.getSignificanceIndex(annotationSet));
+		
 		eventHelper.silenceEventSource(mapping);
 		try {
-			var network = annotationSet.getParent().getNetwork();
-			
-			for(var node : network.getNodeList()) {
-				mapping.putMapValue(node.getSUID(), true);
-			}
-			
 			for(var cluster : annotationSet.getClusters()) {
 				var sigNodes = significanceLookup.getNodesSortedBySignificance(cluster);
+				if(sigNodes == null)
+					sigNodes = List.of();
 				
-				int nodeCount = cluster.getNodeCount();
-				int numVisible = Math.round(nodeCount * percentVisible);
+				int numVisible = getVisibleCount(cluster, sigNodes, percentVisible);
 				
-				var visibleNodes = sigNodes.subList(0, numVisible);
-				var hiddenNodes  = sigNodes.subList(numVisible, sigNodes.size());
+				state.order.put(cluster, sigNodes);
+				state.visibleCount.put(cluster, numVisible);
+				state.nodes.put(cluster, cluster.getNodes());
 				
-				for(var node : visibleNodes) {
-					mapping.putMapValue(node.getSUID(), true);
-				}
-				for(var node : hiddenNodes) {
+				for(var node : sigNodes.subList(numVisible, sigNodes.size())) {
 					mapping.putMapValue(node.getSUID(), false);
 				}
 			}
 		} finally {
 			eventHelper.unsilenceEventSource(mapping);
 		}
-		return mapping;
+		return state;
+	}
+	
+	
+	private void updateVisibilityMapping(VisibilityState.State state, float percentVisible, CyNetworkView netView, VisualStyle visualStyle) {
+		List<CyNode> changed = new ArrayList<>();
+		
+		eventHelper.silenceEventSource(state.mapping);
+		try {
+			for(var cluster : annotationSet.getClusters()) {
+				var sigNodes = state.order.get(cluster);
+				int before = state.visibleCount.get(cluster);
+				int after = getVisibleCount(cluster, sigNodes, percentVisible);
+				
+				for(int i = Math.min(before, after); i < Math.max(before, after); i++) {
+					var node = sigNodes.get(i);
+					state.mapping.putMapValue(node.getSUID(), after > before);
+					changed.add(node);
+				}
+				state.visibleCount.put(cluster, after);
+			}
+		} finally {
+			eventHelper.unsilenceEventSource(state.mapping);
+		}
+		
+		var network = netView.getModel();
+		for(var node : changed) {
+			var nodeView = netView.getNodeView(node);
+			if(nodeView != null) {
+				visualStyle.apply(network.getRow(node), nodeView);
+			}
+		}
 	}
 	
-
 }
@@ -2,8 +2,6 @@ package org.baderlab.autoannotate.internal.ui.view.action;
 
 import java.awt.event.ActionEvent;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -12,6 +10,7 @@ import org.baderlab.autoannotate.internal.labels.LabelMaker;
 import org.baderlab.autoannotate.internal.labels.LabelMakerManager;
 import org.baderlab.autoannotate.internal.model.AnnotationSet;
 import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.NodeSet;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
 import org.cytoscape.model.CyRow;
@@ -37,9 +36,9 @@ public class ClusterMergeAction extends ClusterAction {
 		if(!warnUser(clusters))
 			return;
 		
-		Set<CyNode> nodes = new HashSet<>();
+		NodeSet nodes = null;
 		for(Cluster cluster : clusters) {
-			nodes.addAll(cluster.getNodes());
+			nodes = nodes == null ? cluster.getNodes() : nodes.union(cluster.getNodes());
 		}
 		
 		AnnotationSet annotationSet = clusters.iterator().next().getParent();
@@ -6,6 +6,7 @@ import static org.baderlab.autoannotate.internal.util.TaskTools.taskOf;
 import java.awt.BorderLayout;
 import java.awt.Component;
 import java.awt.FlowLayout;
+import java.awt.Point;
 import java.awt.event.ActionEvent;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
@@ -45,12 +46,14 @@ import org.baderlab.autoannotate.internal.model.ModelManager;
 import org.baderlab.autoannotate.internal.model.NetworkViewSet;
 import org.baderlab.autoannotate.internal.task.CollapseAllTaskFactory;
 import org.baderlab.autoannotate.internal.task.Grouping;
+import org.baderlab.autoannotate.internal.ui.render.ClusterThumbnailRenderer;
 import org.baderlab.autoannotate.internal.ui.view.action.RedrawAction;
 import org.baderlab.autoannotate.internal.ui.view.action.ShowCreateDialogAction;
 import org.baderlab.autoannotate.internal.util.ComboItem;
 import org.baderlab.autoannotate.internal.util.SwingUtil;
 import org.cytoscape.application.swing.CytoPanelComponent;
 import org.cytoscape.application.swing.CytoPanelName;
+import org.cytoscape.event.DebounceTimer;
 import org.cytoscape.model.CyDisposable;
 import org.cytoscape.util.swing.IconManager;
 import org.cytoscape.work.TaskIterator;
@@ -77,12 +80,14 @@ public class ClusterPanel extends JPanel implements CytoPanelComponent, CyDispos
 	@Inject private Provider<ShowCreateDialogAction> showActionProvider;
 	@Inject private Provider<RedrawAction> redrawActionProvider;
 	@Inject private ClusterSignificancePanel clusterSignificancePanel;
+	@Inject private ClusterThumbnailRenderer thumbnailRenderer;
 	
 	private JComboBox<ComboItem<AnnotationSet>> annotationSetCombo;
 	private JTable clusterTable;
 	private ItemListener itemListener;
 	private ClusterTableSelectionListener clusterSelectionListener;
 	private ListSelectionListener clusterThumbnailListener;
+	private final DebounceTimer prefetchDebouncer = new DebounceTimer(200);
 	
 	private EventBus eventBus;
 	
@@ -421,12 +426,36 @@ public class ClusterPanel extends JPanel implements CytoPanelComponent, CyDispos
 		
 		JScrollPane clusterTableScroll = new JScrollPane(clusterTable);
 		clusterTableScroll.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED);
+		clusterTableScroll.getViewport().addChangeListener(e -> {
+			prefetchDebouncer.debounce(() -> SwingUtil.invokeOnEDT(this::prefetchThumbnails));
+		});
 		
 		panel.add(clusterTableScroll, BorderLayout.CENTER);
 		return panel;
 	}
 
 	
+	/**
+	 * Renders the thumbnails of the clusters in the visible rows of the table in the background.
+	 */
+	private void prefetchThumbnails() {
+		var rect = clusterTable.getVisibleRect();
+		int first = clusterTable.rowAtPoint(rect.getLocation());
+		if(first < 0)
+			return;
+		int last = clusterTable.rowAtPoint(new Point(rect.x, rect.y + rect.height - 1));
+		if(last < 0)
+			last = clusterTable.getRowCount() - 1;
+		
+		var model = (ClusterTableModel) clusterTable.getModel();
+		List<Cluster> clusters = new ArrayList<>(last - first + 1);
+		for(int row = first; row <= last; row++) {
+			clusters.add(model.getCluster(clusterTable.convertRowIndexToModel(row)));
+		}
+		thumbnailRenderer.prefetch(clusters);
+	}
+	
+	
 	private Cluster getSelectedCluster() {
 		int rowIndex = clusterTable.getSelectedRow();
 		if(rowIndex >= 0) {
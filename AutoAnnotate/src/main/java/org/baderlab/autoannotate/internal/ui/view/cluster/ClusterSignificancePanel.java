@@ -199,8 +199,7 @@ public class ClusterSignificancePanel extends JPanel {
 					significanceLabel.setVisible(false);
 				} else {
 					clusterTitle.setText("<html>" + cluster.getLabel() + "</html>"); // <html> enables word wrap
-					var image = thumbnailRenderer.getThumbnailImage(cluster);
-					clusterIconLabel.setIcon(new ImageIcon(image));
+					updateThumbnail(cluster);
 					clusterStatusLabel.setText(getStatusText(cluster));
 					
 					slider = createSlider(cluster.getParent());
@@ -222,6 +221,22 @@ public class ClusterSignificancePanel extends JPanel {
 		return this;
 	}
 	
+	private void updateThumbnail(Cluster cluster) {
+		var future = thumbnailRenderer.getThumbnailImage(cluster);
+		if(future.isDone() && !future.isCompletedExceptionally()) {
+			var image = future.join();
+			clusterIconLabel.setIcon(image == null ? thumbnailRenderer.getEmptyIcon() : new ImageIcon(image));
+			return;
+		}
+		
+		clusterIconLabel.setIcon(thumbnailRenderer.getEmptyIcon()); // placeholder
+		future.thenAccept(image -> SwingUtil.invokeOnEDT(() -> {
+			if(image != null && this.cluster == cluster) {
+				clusterIconLabel.setIcon(new ImageIcon(image));
+			}
+		}));
+	}
+	
 	private static boolean enableSlider(Cluster cluster) {
 		return cluster != null
 			&& !cluster.isCollapsed()
@@ -1,7 +1,5 @@
 package org.baderlab.autoannotate.internal.ui.view.create;
 
-import static org.baderlab.autoannotate.internal.util.HiddenTools.hasHiddenNodesOrEdges;
-
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 
@@ -17,6 +15,7 @@ import javax.swing.SwingUtilities;
 import org.baderlab.autoannotate.internal.AfterInjection;
 import org.baderlab.autoannotate.internal.Setting;
 import org.baderlab.autoannotate.internal.SettingManager;
+import org.baderlab.autoannotate.internal.model.VisibilityTracker;
 import org.baderlab.autoannotate.internal.task.AnnotationSetTaskParamters;
 import org.baderlab.autoannotate.internal.task.CollapseAllTaskFactory;
 import org.baderlab.autoannotate.internal.task.CreateAnnotationSetTask;
@@ -25,6 +24,7 @@ import org.baderlab.autoannotate.internal.task.RunClusterMakerException;
 import org.baderlab.autoannotate.internal.ui.view.WarnDialog;
 import org.baderlab.autoannotate.internal.ui.view.WarnDialogModule;
 import org.baderlab.autoannotate.internal.util.TaskTools;
+import org.cytoscape.event.CyEventHelper;
 import org.cytoscape.util.swing.LookAndFeelUtil;
 import org.cytoscape.view.model.CyNetworkView;
 import org.cytoscape.work.FinishStatus;
@@ -49,6 +49,8 @@ public class CreateAnnotationSetDialog extends JDialog implements DialogParent {
 	@Inject private CreateAnnotationSetTask.Factory createTaskFactory;
 	@Inject private CollapseAllTaskFactory.Factory collapseTaskFactoryFactory;
 	@Inject private SettingManager settingManager;
+	@Inject private VisibilityTracker visibilityTracker;
+	@Inject private CyEventHelper eventHelper;
 	@Inject private Provider<JFrame> jframeProvider;
 	
 	@Inject private DialogTaskManager dialogTaskManager;
@@ -172,7 +174,8 @@ public class CreateAnnotationSetDialog extends JDialog implements DialogParent {
 	
 	
 	private void createButtonPressed() {
-		boolean hasHidden = hasHiddenNodesOrEdges(networkView);
+		eventHelper.flushPayloadEvents(); // the tracker is updated from view change events
+		boolean hasHidden = visibilityTracker.hasHiddenNodesOrEdges(networkView);
 		if(hasHidden) {
 			boolean proceed = warnDialogHiddenProvider.get().warnUser(this);
 			if(!proceed) {
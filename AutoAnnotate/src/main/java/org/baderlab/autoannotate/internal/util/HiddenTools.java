@@ -6,7 +6,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import org.baderlab.autoannotate.internal.model.Cluster;
 import org.cytoscape.model.CyEdge;
 import org.cytoscape.model.CyNetwork;
 import org.cytoscape.model.CyNode;
@@ -49,15 +48,6 @@ public class HiddenTools {
 		return hasHiddenNodes(view) || hasHiddenEdges(view);
 	}
 	
-	public static boolean hasHiddenNodes(Cluster cluster) {
-		return hasHiddenNodes(cluster.getNetworkView());
-	}
-	
-	public static boolean allNodesHidden(Cluster cluster) {
-		var view = cluster.getNetworkView();
-		return cluster.getNodes().stream().allMatch(n -> isHiddenNode(n, view));
-	}
-	
 	
 	public static Collection<CyNode> getVisibleNodes(CyNetworkView view) {
 		List<CyNode> nodes = new ArrayList<>();
@@ -70,21 +60,17 @@ public class HiddenTools {
 	}
 
 	/**
-	 * Returns all edges that connect the selected nodes.
+	 * Returns all the visible edges that connect the given nodes. 
+	 * Walks the edges of the network once, runs in O(V+E).
 	 */
 	public static Set<CyEdge> getVisibleEdges(CyNetworkView view, Collection<CyNode> visibleNodes) {
+		Set<CyNode> nodes = visibleNodes instanceof Set ? (Set<CyNode>) visibleNodes : new HashSet<>(visibleNodes);
 		Set<CyEdge> edges = new HashSet<>();
 		CyNetwork net = view.getModel();
 		
-		for(CyNode n1 : visibleNodes) {
-			for(CyNode n2 : visibleNodes) {
-				List<CyEdge> connectingEdges = net.getConnectingEdgeList(n1, n2, CyEdge.Type.ANY);
-				for(var edge : connectingEdges) {
-					var ev = view.getEdgeView(edge);
-					if(!isHiddenEdge(ev)) {
-						edges.add(edge);
-					}
-				}
+		for(CyEdge edge : net.getEdgeList()) {
+			if(nodes.contains(edge.getSource()) && nodes.contains(edge.getTarget()) && !isHiddenEdge(view.getEdgeView(edge))) {
+				edges.add(edge);
 			}
 		}
 		
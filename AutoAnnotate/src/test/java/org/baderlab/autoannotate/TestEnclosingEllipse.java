@@ -0,0 +1,109 @@
+package org.baderlab.autoannotate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Random;
+
+import org.baderlab.autoannotate.internal.model.CoordinateData;
+import org.baderlab.autoannotate.internal.ui.render.EnclosingEllipse;
+import org.cytoscape.model.CyNode;
+import org.junit.Test;
+
+/**
+ * Compares EnclosingEllipse with the loop that ArgsShape used before, which grew the ellipse by 1.1x until every node was inside.
+ */
+public class TestEnclosingEllipse {
+	
+	private static final int OFFSET = 3;
+	
+	
+	private static boolean nodesOutOfCluster(CoordinateData data, double width, double height, double centreX, double centreY, int ellipseWidth) {
+		double semimajor_axis = width / 2;
+		double semiminor_axis = height / 2;
+		
+		for (int i = 0; i < data.getNodeCount(); i++) {
+			double nodeSize = data.getRadius(i);
+			if (Math.pow((data.getX(i) - centreX - ellipseWidth) / semimajor_axis, 2) + Math.pow(nodeSize / semimajor_axis, 2)
+					+ Math.pow((data.getY(i) - centreY - ellipseWidth) / semiminor_axis, 2) + Math.pow(nodeSize / semiminor_axis, 2) >= 1) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	private static double iterativeScale(CoordinateData data, double width, double height) {
+		double scale = 1;
+		while(nodesOutOfCluster(data, width * scale, height * scale, data.getCenterX(), data.getCenterY(), OFFSET)) {
+			scale *= 1.1;
+		}
+		return scale;
+	}
+	
+	private static CoordinateData randomCluster(Random random, int n) {
+		CyNode[] nodes = new CyNode[n];
+		double[] xs = new double[n], ys = new double[n], radii = new double[n];
+		for(int i = 0; i < n; i++) {
+			nodes[i] = mock(CyNode.class);
+			xs[i] = random.nextDouble() * 1000 - 500;
+			ys[i] = random.nextDouble() * 300;
+			radii[i] = 10 + random.nextDouble() * 40;
+		}
+		return CoordinateData.forPositions(nodes, xs, ys, radii);
+	}
+	
+	
+	@Test
+	public void testMatchesIterativeFit() {
+		Random random = new Random(42);
+		for(int t = 0; t < 200; t++) {
+			CoordinateData data = randomCluster(random, 1 + random.nextInt(50));
+			double width = Math.max(data.getWidth(), 1);
+			double height = Math.max(data.getHeight(), 1);
+			
+			double exact = EnclosingEllipse.fitScale(data, data.getCenterX(), data.getCenterY(), width / 2, height / 2, OFFSET);
+			double iterative = iterativeScale(data, width, height);
+			
+			// the exact fit is never larger than the old fit, and at most one 1.1x step smaller
+			assertTrue(exact <= iterative * (1 + 1e-9));
+			assertTrue(exact * 1.1 > iterative * (1 - 1e-9));
+			
+			// every node is inside an ellipse that is slightly larger than the exact fit, and some node is outside a smaller one
+			assertFalse(nodesOutOfCluster(data, width * exact * 1.0001, height * exact * 1.0001, data.getCenterX(), data.getCenterY(), OFFSET));
+			if(exact > 1)
+				assertTrue(nodesOutOfCluster(data, width * exact * 0.9999, height * exact * 0.9999, data.getCenterX(), data.getCenterY(), OFFSET));
+		}
+	}
+	
+	
+	@Test
+	public void testArrayAndCoordinateDataAgree() {
+		Random random = new Random(7);
+		int n = 20;
+		CyNode[] nodes = new CyNode[n];
+		double[] xs = new double[n], ys = new double[n], radii = new double[n];
+		for(int i = 0; i < n; i++) {
+			nodes[i] = mock(CyNode.class);
+			xs[i] = random.nextDouble() * 200;
+			ys[i] = random.nextDouble() * 200;
+			radii[i] = random.nextDouble() * 30;
+		}
+		CoordinateData data = CoordinateData.forPositions(nodes, xs, ys, radii);
+		
+		double fromData = EnclosingEllipse.fitScale(data, 100, 100, 50, 80, OFFSET);
+		double fromArrays = EnclosingEllipse.fitScale(xs, ys, radii, n, 100, 100, 50, 80, OFFSET);
+		assertEquals(fromArrays, fromData, 0.0);
+	}
+	
+	
+	@Test
+	public void testAlreadyEnclosed() {
+		double[] xs = { 0, 10 };
+		double[] ys = { 0, 10 };
+		double[] radii = { 1, 1 };
+		assertEquals(1.0, EnclosingEllipse.fitScale(xs, ys, radii, 2, 5, 5, 100, 100, 0), 0.0);
+	}
+	
+}
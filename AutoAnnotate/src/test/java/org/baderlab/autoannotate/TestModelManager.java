@@ -212,6 +212,47 @@ public class TestModelManager {
 	}
 	
 	
+	@Test
+	public void testClusterIndex() {
+		CyNetworkView networkView = appManager.getCurrentNetworkView();
+		NetworkViewSet nvs = modelManager.getNetworkViewSet(networkView); 
+		AnnotationSet as = nvs.createAnnotationSet("as_name", "lab_col");
+		
+		List<CyNode> nodes1 = mockNodes(10);
+		List<CyNode> nodes2 = mockNodes(10);
+		List<CyNode> nodes3 = mockNodes(10);
+		
+		Cluster c1 = as.createCluster(nodes1, "nodes1", false);
+		Cluster c2 = as.createCluster(nodes2, "nodes2", false);
+		Cluster c3 = as.createCluster(nodes3, "nodes3", false);
+		
+		assertEquals(Optional.of(c1), as.getCluster(nodes1.get(0)));
+		assertEquals(Optional.of(c2), as.getCluster(nodes2.get(0)));
+		assertEquals(Optional.empty(), as.getCluster(mock(CyNode.class)));
+		assertEquals(1, as.getClusterIndex(c1));
+		assertEquals(2, as.getClusterIndex(c2));
+		assertEquals(3, as.getClusterIndex(c3));
+		
+		// removing nodes updates the node index
+		as.removeNodes(nodes2.subList(0, 5));
+		assertEquals(Optional.empty(), as.getCluster(nodes2.get(0)));
+		assertEquals(Optional.of(c2), as.getCluster(nodes2.get(5)));
+		
+		// deleting a cluster updates both indexes
+		c1.delete();
+		assertEquals(Optional.empty(), as.getCluster(nodes1.get(0)));
+		assertEquals(0, as.getClusterIndex(c1));
+		assertEquals(1, as.getClusterIndex(c2));
+		assertEquals(2, as.getClusterIndex(c3));
+		
+		// removing all the nodes deletes the cluster
+		as.removeNodes(nodes3);
+		assertFalse(as.getClusters().contains(c3));
+		assertEquals(0, as.getClusterIndex(c3));
+		assertTrue(as.getClusters(nodes3.get(0)).isEmpty());
+	}
+	
+	
 	@Test
 	public void testAnnotationSetBuilder() {
 		CyNetworkView networkView = appManager.getCurrentNetworkView();
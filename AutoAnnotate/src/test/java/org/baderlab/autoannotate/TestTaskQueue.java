@@ -0,0 +1,208 @@
+package org.baderlab.autoannotate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.NetworkViewSet;
+import org.baderlab.autoannotate.internal.ui.render.TaskQueue;
+import org.baderlab.autoannotate.internal.ui.render.TaskQueue.Kind;
+import org.baderlab.autoannotate.internal.ui.render.UpdateNetworkViewTask;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.work.AbstractTask;
+import org.cytoscape.work.SynchronousTaskManager;
+import org.cytoscape.work.Task;
+import org.cytoscape.work.TaskIterator;
+import org.cytoscape.work.TaskMonitor;
+import org.jukito.JukitoRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+
+@RunWith(JukitoRunner.class)
+public class TestTaskQueue {
+	
+	@Inject private TaskQueue taskQueue;
+	@Inject private SynchronousTaskManager<?> syncTaskManager;
+	
+	private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	
+	
+	private class NamedTask extends AbstractTask {
+		final String name;
+		NamedTask(String name) {
+			this.name = name;
+		}
+		@Override
+		public void run(TaskMonitor tm) {
+			ran.add(name);
+		}
+	}
+	
+	/**
+	 * Keeps the queue busy until released so that the work submitted after it is pending.
+	 */
+	private class BlockingTask extends AbstractTask {
+		@Override
+		public void run(TaskMonitor tm) throws Exception {
+			started.countDown();
+			release.await(5, TimeUnit.SECONDS);
+		}
+	}
+	
+	
+	@Before
+	public void setup() {
+		doAnswer(invocation -> {
+			TaskIterator tasks = invocation.getArgument(0);
+			while(tasks.hasNext()) {
+				tasks.next().run(mock(TaskMonitor.class));
+			}
+			return null;
+		}).when(syncTaskManager).execute(any(TaskIterator.class));
+	}
+	
+	@After
+	public void releaseQueue() {
+		release.countDown();
+	}
+	
+	
+	private void block() throws InterruptedException {
+		taskQueue.submit(new BlockingTask(), true);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+	}
+	
+	private Future<?> submit(Kind kind, NetworkViewSet nvs, Set<Cluster> clusters, Task ... tasks) {
+		return taskQueue.submit(kind, nvs, clusters, List.of(tasks), true);
+	}
+	
+	private static void await(Future<?> ... futures) throws Exception {
+		for(Future<?> future : futures) {
+			future.get(5, TimeUnit.SECONDS);
+		}
+	}
+	
+	
+	@Test
+	public void testUpdateSupersededBySuperset() throws Exception {
+		NetworkViewSet nvs = mock(NetworkViewSet.class);
+		Cluster c1 = mock(Cluster.class);
+		Cluster c2 = mock(Cluster.class);
+		
+		long dropped = taskQueue.getDroppedCount();
+		block();
+		Future<?> f1 = submit(Kind.UPDATE, nvs, Set.of(c1), new NamedTask("update1"));
+		Future<?> f2 = submit(Kind.UPDATE, nvs, Set.of(c1, c2), new NamedTask("update12"));
+		release.countDown();
+		await(f1, f2);
+		
+		assertEquals(List.of("update12"), ran);
+		assertEquals(1, taskQueue.getDroppedCount() - dropped);
+	}
+	
+	
+	@Test
+	public void testUpdateNotSupersededBySubset() throws Exception {
+		NetworkViewSet nvs = mock(NetworkViewSet.class);
+		Cluster c1 = mock(Cluster.class);
+		Cluster c2 = mock(Cluster.class);
+		
+		long dropped = taskQueue.getDroppedCount();
+		block();
+		Future<?> f1 = submit(Kind.UPDATE, nvs, Set.of(c1, c2), new NamedTask("update12"));
+		Future<?> f2 = submit(Kind.UPDATE, nvs, Set.of(c1), new NamedTask("update1"));
+		release.countDown();
+		await(f1, f2);
+		
+		assertEquals(List.of("update12", "update1"), ran);
+		assertEquals(0, taskQueue.getDroppedCount() - dropped);
+	}
+	
+	
+	@Test
+	public void testRedrawSupersedesOnlySameView() throws Exception {
+		NetworkViewSet nvs1 = mock(NetworkViewSet.class);
+		NetworkViewSet nvs2 = mock(NetworkViewSet.class);
+		Cluster c1 = mock(Cluster.class);
+		
+		long dropped = taskQueue.getDroppedCount();
+		block();
+		Future<?> f1 = submit(Kind.UPDATE, nvs1, Set.of(c1), new NamedTask("update1"));
+		Future<?> f2 = submit(Kind.VISIBILITY, nvs1, null, new NamedTask("visibility1"));
+		Future<?> f3 = submit(Kind.VISIBILITY, nvs2, null, new NamedTask("visibility2"));
+		Future<?> f4 = submit(Kind.OTHER, nvs1, null, new NamedTask("other1"));
+		Future<?> f5 = submit(Kind.REDRAW, nvs1, null, new NamedTask("redraw1"));
+		release.countDown();
+		await(f1, f2, f3, f4, f5);
+		
+		assertEquals(List.of("visibility2", "other1", "redraw1"), ran);
+		assertEquals(2, taskQueue.getDroppedCount() - dropped);
+	}
+	
+	
+	@Test
+	public void testTrailingUpdateNetworkViewMerged() throws Exception {
+		NetworkViewSet nvs = mock(NetworkViewSet.class);
+		CyNetworkView netView = mock(CyNetworkView.class);
+		
+		block();
+		Future<?> f1 = submit(Kind.OTHER, nvs, null, new NamedTask("other1"), new UpdateNetworkViewTask(netView));
+		Future<?> f2 = submit(Kind.OTHER, nvs, null, new NamedTask("other2"), new UpdateNetworkViewTask(netView));
+		release.countDown();
+		await(f1, f2);
+		
+		assertEquals(List.of("other1", "other2"), ran);
+		verify(netView, times(1)).updateView();
+	}
+	
+	
+	@Test
+	public void testSelectionRunsBeforeWorkForOtherViews() throws Exception {
+		NetworkViewSet nvs1 = mock(NetworkViewSet.class);
+		NetworkViewSet nvs2 = mock(NetworkViewSet.class);
+		Cluster c1 = mock(Cluster.class);
+		
+		block();
+		Future<?> f1 = submit(Kind.OTHER, nvs2, null, new NamedTask("other2"));
+		Future<?> f2 = submit(Kind.SELECTION, nvs1, Set.of(c1), new NamedTask("selection1"));
+		release.countDown();
+		await(f1, f2);
+		
+		assertEquals(List.of("selection1", "other2"), ran);
+	}
+	
+	
+	@Test
+	public void testSelectionDoesNotOvertakeWorkForSameView() throws Exception {
+		NetworkViewSet nvs = mock(NetworkViewSet.class);
+		Cluster c1 = mock(Cluster.class);
+		
+		block();
+		Future<?> f1 = submit(Kind.OTHER, nvs, null, new NamedTask("draw"));
+		Future<?> f2 = submit(Kind.SELECTION, nvs, Set.of(c1), new NamedTask("selection"));
+		release.countDown();
+		await(f1, f2);
+		
+		assertEquals(List.of("draw", "selection"), ran);
+	}
+	
+}
@@ -0,0 +1,176 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_X_LOCATION;
+import static org.cytoscape.view.presentation.property.BasicVisualLexicon.NODE_Y_LOCATION;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.baderlab.autoannotate.NetworkTestUtil;
+import org.baderlab.autoannotate.internal.model.AnnotationSet;
+import org.baderlab.autoannotate.internal.model.Cluster;
+import org.baderlab.autoannotate.internal.model.ModelManager;
+import org.baderlab.autoannotate.internal.model.NetworkViewSet;
+import org.baderlab.autoannotate.util.LogSilenceRule;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNetworkFactory;
+import org.cytoscape.model.CyNetworkManager;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.view.layout.LayoutNode;
+import org.cytoscape.view.model.CyNetworkView;
+import org.cytoscape.view.model.CyNetworkViewFactory;
+import org.cytoscape.view.model.View;
+import org.cytoscape.work.undo.UndoSupport;
+import org.jukito.JukitoRunner;
+import org.jukito.UseModules;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runner.RunWith;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+
+@RunWith(JukitoRunner.class)
+@UseModules(NetworkTestUtil.TestModule.class)
+public class TestCoseLayoutAlgorithmTask {
+	
+	@Rule public TestRule logSilenceRule = new LogSilenceRule();
+	
+	private static final int CLUSTERS = 3;
+	private static final int CLUSTER_SIZE = 4;
+	private static final double CLUSTER_SPACING = 400;
+	
+	@Inject private ModelManager modelManager;
+	@Inject private ClusterLayoutMemory layoutMemory;
+	@Inject private UndoSupport undoSupport;
+	@Inject private Injector injector;
+	
+	private CyNetwork network;
+	private CyNetworkView networkView;
+	private List<Cluster> clusters;
+	
+	
+	/**
+	 * Creates clusters that are not connected to each other, so that each cluster is its own component.
+	 */
+	@Before
+	public void setUp(CyNetworkFactory networkFactory, CyNetworkManager networkManager, CyNetworkViewFactory networkViewFactory) {
+		network = networkFactory.createNetwork();
+		networkManager.addNetwork(network);
+		
+		List<List<CyNode>> clusterNodes = new ArrayList<>();
+		for(int c = 0; c < CLUSTERS; c++) {
+			List<CyNode> nodes = new ArrayList<>();
+			for(int i = 0; i < CLUSTER_SIZE; i++) {
+				nodes.add(network.addNode());
+			}
+			clusterNodes.add(nodes);
+		}
+		
+		networkView = networkViewFactory.createNetworkView(network);
+		for(int c = 0; c < CLUSTERS; c++) {
+			List<CyNode> nodes = clusterNodes.get(c);
+			for(int i = 0; i < nodes.size(); i++) {
+				View<CyNode> nodeView = networkView.getNodeView(nodes.get(i));
+				nodeView.setVisualProperty(NODE_X_LOCATION, c * CLUSTER_SPACING + (i % 2) * 40.0);
+				nodeView.setVisualProperty(NODE_Y_LOCATION, (i / 2) * 40.0);
+			}
+		}
+		
+		NetworkViewSet nvs = modelManager.getNetworkViewSet(networkView);
+		AnnotationSet as = nvs.createAnnotationSet("as1", CyNetwork.NAME);
+		clusters = new ArrayList<>();
+		for(int c = 0; c < CLUSTERS; c++) {
+			clusters.add(as.createCluster(clusterNodes.get(c), "cluster" + c, false));
+		}
+		nvs.select(as);
+	}
+	
+	
+	private CoseLayoutAlgorithmTask createTask(boolean onlyChangedClusters) {
+		CoseLayoutContext context = new CoseLayoutContext();
+		context.onlyChangedClusters = onlyChangedClusters;
+		Set<View<CyNode>> nodeViews = new HashSet<>(networkView.getNodeViews());
+		CoseLayoutAlgorithmTask task = new CoseLayoutAlgorithmTask(networkView, nodeViews, context, undoSupport);
+		injector.injectMembers(task);
+		return task;
+	}
+	
+	private List<LayoutNode> createLayoutNodes(Cluster cluster, List<LayoutNode> all) {
+		List<LayoutNode> layoutNodes = new ArrayList<>();
+		for(CyNode node : cluster.getNodes()) {
+			LayoutNode ln = new LayoutNode(networkView.getNodeView(node), all.size(), network.getRow(node));
+			layoutNodes.add(ln);
+			all.add(ln);
+		}
+		return layoutNodes;
+	}
+	
+	
+	@Test
+	public void testUnchangedClustersKeepPositions() {
+		Cluster changed = clusters.get(CLUSTERS - 1);
+		for(Cluster cluster : clusters) {
+			if(cluster != changed)
+				layoutMemory.remember(cluster);
+		}
+		assertTrue(layoutMemory.isChanged(changed));
+		
+		List<LayoutNode> all = new ArrayList<>();
+		List<List<LayoutNode>> clusterLayoutNodes = new ArrayList<>();
+		for(Cluster cluster : clusters) {
+			clusterLayoutNodes.add(createLayoutNodes(cluster, all));
+		}
+		double[] x = all.stream().mapToDouble(LayoutNode::getX).toArray();
+		double[] y = all.stream().mapToDouble(LayoutNode::getY).toArray();
+		
+		createTask(true).layoutNodes(all, List.of(), Set.copyOf(clusters));
+		
+		// the unchanged clusters are not moved, even though every cluster is a separate component
+		for(int c = 0; c < CLUSTERS - 1; c++) {
+			for(LayoutNode ln : clusterLayoutNodes.get(c)) {
+				assertEquals(x[ln.getIndex()], ln.getX(), 0);
+				assertEquals(y[ln.getIndex()], ln.getY(), 0);
+			}
+		}
+		
+		// the changed cluster stays close to where it was instead of being laid out and packed with the others
+		double centerX = 0, centerY = 0;
+		for(LayoutNode ln : clusterLayoutNodes.get(CLUSTERS - 1)) {
+			centerX += ln.getX() / CLUSTER_SIZE;
+			centerY += ln.getY() / CLUSTER_SIZE;
+		}
+		assertEquals((CLUSTERS - 1) * CLUSTER_SPACING + 20, centerX, CLUSTER_SPACING / 2);
+		assertEquals(20, centerY, CLUSTER_SPACING / 2);
+		
+		assertFalse(layoutMemory.isChanged(changed));
+	}
+	
+	
+	@Test
+	public void testNothingChanged() {
+		clusters.forEach(layoutMemory::remember);
+		
+		List<LayoutNode> all = new ArrayList<>();
+		for(Cluster cluster : clusters) {
+			createLayoutNodes(cluster, all);
+		}
+		double[] x = all.stream().mapToDouble(LayoutNode::getX).toArray();
+		double[] y = all.stream().mapToDouble(LayoutNode::getY).toArray();
+		
+		createTask(true).layoutNodes(all, List.of(), Set.copyOf(clusters));
+		
+		for(LayoutNode ln : all) {
+			assertEquals(x[ln.getIndex()], ln.getX(), 0);
+			assertEquals(y[ln.getIndex()], ln.getY(), 0);
+		}
+	}
+	
+}
@@ -0,0 +1,173 @@
+package org.baderlab.autoannotate.internal.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TestQuadTree {
+	
+	private static final double STRENGTH = 2500;
+	
+	
+	/**
+	 * The force on point i from every other point, computed pairwise.
+	 */
+	private static double[] bruteForce(double[] x, double[] y, int n, int i) {
+		double[] force = new double[2];
+		for(int j = 0; j < n; j++) {
+			if(j == i)
+				continue;
+			double dx = x[i] - x[j];
+			double dy = y[i] - y[j];
+			double d2 = dx * dx + dy * dy;
+			force[0] += dx * STRENGTH / d2;
+			force[1] += dy * STRENGTH / d2;
+		}
+		return force;
+	}
+	
+	private static double[] treeForce(QuadTree tree, int i, double theta, int[] stack) {
+		double[] force = new double[2];
+		tree.repulsion(i, theta, STRENGTH, force, stack);
+		return force;
+	}
+	
+	private static double[][] randomPoints(Random random, int n) {
+		double[] x = new double[n], y = new double[n];
+		for(int i = 0; i < n; i++) {
+			x[i] = random.nextDouble() * 1000;
+			y[i] = random.nextDouble() * 1000;
+		}
+		return new double[][] { x, y };
+	}
+	
+	
+	@Test
+	public void testExactWithThetaZero() {
+		int n = 300;
+		double[][] p = randomPoints(new Random(1), n);
+		QuadTree tree = new QuadTree(n);
+		tree.build(p[0], p[1], n);
+		int[] stack = tree.newStack();
+		
+		for(int i = 0; i < n; i++) {
+			double[] expected = bruteForce(p[0], p[1], n, i);
+			double[] actual = treeForce(tree, i, 0, stack);
+			assertEquals(expected[0], actual[0], 1e-6 * (1 + Math.abs(expected[0])));
+			assertEquals(expected[1], actual[1], 1e-6 * (1 + Math.abs(expected[1])));
+		}
+	}
+	
+	
+	@Test
+	public void testApproximationAccuracy() {
+		int n = 1000;
+		double[][] p = randomPoints(new Random(2), n);
+		QuadTree tree = new QuadTree(n);
+		tree.build(p[0], p[1], n);
+		int[] stack = tree.newStack();
+		
+		// the error relative to the total magnitude of the forces shrinks with theta
+		double previousError = Double.MAX_VALUE;
+		for(double theta : new double[] { 1.0, 0.8, 0.5, 0.2 }) {
+			double error = 0, total = 0;
+			for(int i = 0; i < n; i++) {
+				double[] expected = bruteForce(p[0], p[1], n, i);
+				double[] actual = treeForce(tree, i, theta, stack);
+				error += Math.hypot(expected[0] - actual[0], expected[1] - actual[1]);
+				total += Math.hypot(expected[0], expected[1]);
+			}
+			double relative = error / total;
+			assertTrue("theta=" + theta + " error=" + relative, relative < 0.1);
+			assertTrue(relative <= previousError);
+			previousError = relative;
+		}
+	}
+	
+	
+	@Test
+	public void testNoSelfRepulsion() {
+		// a point alone in a far corner, next to a dense group, its own cell must never be approximated
+		int n = 201;
+		Random random = new Random(3);
+		double[] x = new double[n], y = new double[n];
+		for(int i = 0; i < n - 1; i++) {
+			x[i] = 900 + random.nextDouble() * 100;
+			y[i] = 900 + random.nextDouble() * 100;
+		}
+		x[n-1] = 0;
+		y[n-1] = 0;
+		
+		QuadTree tree = new QuadTree(n);
+		tree.build(x, y, n);
+		int[] stack = tree.newStack();
+		
+		for(double theta : new double[] { 0.1, 0.5, 0.8, 1.0 }) {
+			for(int i : new int[] { 0, n / 2, n - 1 }) {
+				double[] expected = bruteForce(x, y, n, i);
+				double[] actual = treeForce(tree, i, theta, stack);
+				double magnitude = Math.hypot(expected[0], expected[1]);
+				assertEquals(0, Math.hypot(expected[0] - actual[0], expected[1] - actual[1]) / magnitude, 0.1);
+			}
+		}
+	}
+	
+	
+	@Test
+	public void testTwoPoints() {
+		double[] x = { 10, 20 };
+		double[] y = { 5, 5 };
+		QuadTree tree = new QuadTree(2);
+		tree.build(x, y, 2);
+		int[] stack = tree.newStack();
+		
+		double[] f0 = treeForce(tree, 0, 0.8, stack);
+		double[] f1 = treeForce(tree, 1, 0.8, stack);
+		assertEquals(-STRENGTH / 10, f0[0], 1e-9);
+		assertEquals(0, f0[1], 1e-9);
+		assertEquals(-f0[0], f1[0], 1e-9);
+	}
+	
+	
+	@Test
+	public void testSinglePoint() {
+		QuadTree tree = new QuadTree(1);
+		tree.build(new double[] { 5 }, new double[] { 5 }, 1);
+		double[] force = treeForce(tree, 0, 0.8, tree.newStack());
+		assertEquals(0, force[0], 0);
+		assertEquals(0, force[1], 0);
+	}
+	
+	
+	@Test
+	public void testCoincidentPoints() {
+		// three points on top of each other and one further away
+		double[] x = { 50, 50, 50, 150 };
+		double[] y = { 50, 50, 50, 50 };
+		QuadTree tree = new QuadTree(4);
+		tree.build(x, y, 4);
+		int[] stack = tree.newStack();
+		
+		double[][] forces = new double[4][];
+		for(int i = 0; i < 4; i++) {
+			forces[i] = treeForce(tree, i, 0.8, stack);
+			assertFalse(Double.isNaN(forces[i][0]) || Double.isNaN(forces[i][1]));
+			assertFalse(Double.isInfinite(forces[i][0]) || Double.isInfinite(forces[i][1]));
+		}
+		
+		// the coincident points are pushed apart in different directions
+		assertTrue(Math.hypot(forces[0][0], forces[0][1]) > 0);
+		assertTrue(Math.abs(forces[0][0] - forces[1][0]) + Math.abs(forces[0][1] - forces[1][1]) > 1);
+		assertTrue(Math.abs(forces[1][0] - forces[2][0]) + Math.abs(forces[1][1] - forces[2][1]) > 1);
+		
+		// the distant point only feels the three coincident points
+		double[] expected = bruteForce(x, y, 4, 3);
+		assertEquals(expected[0], forces[3][0], 1e-9);
+		assertEquals(expected[1], forces[3][1], 1e-9);
+	}
+	
+}
@@ -0,0 +1,189 @@
+package org.baderlab.autoannotate.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.baderlab.autoannotate.internal.model.ModelEvents.AnnotationSetChanged;
+import org.baderlab.autoannotate.internal.model.ModelEvents.ClustersChanged;
+import org.baderlab.autoannotate.internal.model.ModelEvents.ClustersSelected;
+import org.baderlab.autoannotate.internal.model.ModelEvents.ModelEvent;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestModelEventDispatcher {
+	
+	private final List<ModelEvent> fired = Collections.synchronizedList(new ArrayList<>());
+	private final CountDownLatch started = new CountDownLatch(1);
+	private final CountDownLatch release = new CountDownLatch(1);
+	private final Semaphore received = new Semaphore(0);
+	
+	private ModelEventDispatcher dispatcher;
+	private AnnotationSet as1, as2;
+	private ModelEvent gate;
+	
+	
+	@Before
+	public void setup() {
+		as1 = mock(AnnotationSet.class);
+		as2 = mock(AnnotationSet.class);
+		gate = new AnnotationSetChanged(as1);
+		
+		// the sink blocks on the gate event so that the events posted after it are pending
+		dispatcher = new ModelEventDispatcher(event -> {
+			if(event == gate) {
+				started.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch(InterruptedException e) { }
+			}
+			fired.add(event);
+			received.release();
+		});
+	}
+	
+	@After
+	public void shutdown() {
+		release.countDown();
+		dispatcher.shutdown();
+	}
+	
+	
+	private Cluster cluster(AnnotationSet as) {
+		Cluster cluster = mock(Cluster.class);
+		when(cluster.getParent()).thenReturn(as);
+		return cluster;
+	}
+	
+	private void block() throws InterruptedException {
+		dispatcher.post(gate);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+	}
+	
+	/**
+	 * Releases the gate and waits until the sink has received the given number of events, including the gate.
+	 */
+	private void releaseAndWait(int events) throws InterruptedException {
+		release.countDown();
+		assertTrue(received.tryAcquire(events, 5, TimeUnit.SECONDS));
+	}
+	
+	
+	@Test
+	public void testClustersChangedMerged() throws Exception {
+		Cluster c1 = cluster(as1), c2 = cluster(as1), c3 = cluster(as1);
+		
+		block();
+		dispatcher.post(new ClustersChanged(c1));
+		dispatcher.post(new ClustersChanged(c2, true));
+		dispatcher.post(new ClustersChanged(Set.of(c1, c3)));
+		assertEquals(1, dispatcher.getQueueDepth());
+		releaseAndWait(2);
+		
+		assertEquals(2, fired.size());
+		assertSame(gate, fired.get(0));
+		ClustersChanged merged = (ClustersChanged) fired.get(1);
+		assertEquals(Set.of(c1, c2, c3), merged.getClusters());
+		assertTrue(merged.getVisibilityChanged());
+		assertEquals(2, dispatcher.getMergedCount());
+	}
+	
+	
+	@Test
+	public void testClustersChangedSplitByAnnotationSet() throws Exception {
+		Cluster a = cluster(as1), b = cluster(as2), c = cluster(as2);
+		
+		block();
+		dispatcher.post(new ClustersChanged(Set.of(a, b)));
+		dispatcher.post(new ClustersChanged(c));
+		assertEquals(2, dispatcher.getQueueDepth());
+		releaseAndWait(3);
+		
+		assertEquals(3, fired.size());
+		Set<Set<Cluster>> clusterSets = Set.of(((ClustersChanged)fired.get(1)).getClusters(), ((ClustersChanged)fired.get(2)).getClusters());
+		assertEquals(Set.of(Set.of(a), Set.of(b, c)), clusterSets);
+		assertEquals(1, dispatcher.getMergedCount());
+	}
+	
+	
+	@Test
+	public void testClustersSelectedMerged() throws Exception {
+		Cluster c1 = cluster(as1), c2 = cluster(as1), c3 = cluster(as1);
+		
+		block();
+		dispatcher.post(new ClustersSelected(as1, List.of(c1, c2)));
+		dispatcher.post(new ClustersSelected(as1, List.of(c3), List.of(c1)));
+		releaseAndWait(2);
+		
+		assertEquals(2, fired.size());
+		ClustersSelected merged = (ClustersSelected) fired.get(1);
+		assertFalse(merged.isIncremental());
+		assertEquals(Set.of(c2, c3), Set.copyOf(merged.getClusters()));
+	}
+	
+	
+	@Test
+	public void testIncrementalSelectionMerged() throws Exception {
+		Cluster c1 = cluster(as1), c2 = cluster(as1), c3 = cluster(as1);
+		
+		block();
+		dispatcher.post(new ClustersSelected(as1, List.of(c1), List.of(c2)));
+		dispatcher.post(new ClustersSelected(as1, List.of(c2), List.of(c3)));
+		releaseAndWait(2);
+		
+		ClustersSelected merged = (ClustersSelected) fired.get(1);
+		assertTrue(merged.isIncremental());
+		assertEquals(Set.of(c1, c2), Set.copyOf(merged.getClusters()));
+		assertEquals(Set.of(c3), Set.copyOf(merged.getDeselectedClusters()));
+	}
+	
+	
+	@Test
+	public void testOtherEventsNotMerged() throws Exception {
+		block();
+		var e1 = new AnnotationSetChanged(as1);
+		var e2 = new AnnotationSetChanged(as1);
+		dispatcher.post(e1);
+		dispatcher.post(e2);
+		releaseAndWait(3);
+		
+		assertEquals(List.of(gate, e1, e2), fired);
+		assertEquals(0, dispatcher.getMergedCount());
+	}
+	
+	
+	@Test
+	public void testBackPressure() throws Exception {
+		block();
+		
+		CountDownLatch posted = new CountDownLatch(1);
+		Thread poster = new Thread(() -> {
+			for(int i = 0; i <= ModelEventDispatcher.MAX_PENDING; i++) {
+				dispatcher.post(new AnnotationSetChanged(as1));
+			}
+			posted.countDown();
+		});
+		poster.start();
+		
+		// the poster blocks once more than MAX_PENDING events are waiting
+		assertFalse(posted.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(ModelEventDispatcher.MAX_PENDING + 1, dispatcher.getQueueDepth());
+		
+		release.countDown();
+		assertTrue(posted.await(5, TimeUnit.SECONDS));
+		poster.join(5000);
+	}
+	
+}
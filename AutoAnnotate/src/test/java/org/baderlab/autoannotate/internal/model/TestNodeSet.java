@@ -0,0 +1,129 @@
+package org.baderlab.autoannotate.internal.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.cytoscape.model.CyNode;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestNodeSet {
+	
+	private NodeIndex index;
+	private List<CyNode> nodes;
+	
+	@Before
+	public void setup() {
+		index = new NodeIndex();
+		nodes = Stream.generate(() -> mock(CyNode.class)).limit(10).collect(Collectors.toList());
+	}
+	
+	private NodeSet of(int ... positions) {
+		Set<CyNode> set = new HashSet<>();
+		for(int p : positions) {
+			set.add(nodes.get(p));
+		}
+		return NodeSet.of(index, set);
+	}
+	
+	private Set<CyNode> set(int ... positions) {
+		Set<CyNode> set = new HashSet<>();
+		for(int p : positions) {
+			set.add(nodes.get(p));
+		}
+		return set;
+	}
+	
+	
+	@Test
+	public void testContains() {
+		NodeSet ns = of(1, 3, 5);
+		assertEquals(3, ns.size());
+		assertTrue(ns.contains(nodes.get(3)));
+		assertFalse(ns.contains(nodes.get(2)));
+		assertFalse(ns.contains(nodes.get(9))); // never assigned an id
+		assertFalse(ns.contains("not a node"));
+		assertFalse(ns.contains(null));
+		assertEquals(set(1, 3, 5), new HashSet<>(ns));
+	}
+	
+	@Test
+	public void testOfRemovesDuplicatesAndNulls() {
+		NodeSet ns = NodeSet.of(index, Arrays.asList(nodes.get(0), null, nodes.get(0), nodes.get(1)));
+		assertEquals(2, ns.size());
+		assertEquals(set(0, 1), new HashSet<>(ns));
+	}
+	
+	@Test
+	public void testOfReturnsSameInstance() {
+		NodeSet ns = of(1, 2);
+		assertSame(ns, NodeSet.of(index, ns));
+	}
+	
+	@Test
+	public void testContainsAll() {
+		NodeSet ns = of(1, 2, 3, 4);
+		assertTrue(ns.containsAll(of(2, 4)));
+		assertTrue(ns.containsAll(of()));
+		assertFalse(ns.containsAll(of(2, 5)));
+		assertFalse(of(2).containsAll(ns));
+		assertTrue(ns.containsAll(set(1, 3))); // not a NodeSet
+		assertFalse(ns.containsAll(set(1, 7)));
+	}
+	
+	@Test
+	public void testUnion() {
+		NodeSet a = of(1, 3, 5);
+		assertEquals(set(1, 2, 3, 5, 6), new HashSet<>(a.union(of(2, 3, 6))));
+		assertEquals(set(1, 3, 5, 7), new HashSet<>(a.union(set(7)))); // not a NodeSet
+		assertEquals(set(1, 3, 5), new HashSet<>(a.union(of())));
+		assertEquals(set(1, 3, 5), new HashSet<>(of().union(a)));
+		assertEquals(a, a.union(a));
+		assertEquals(set(1, 3, 5), new HashSet<>(a)); // unchanged
+	}
+	
+	@Test
+	public void testDifference() {
+		NodeSet a = of(1, 2, 3, 4, 5);
+		assertEquals(set(1, 3, 5), new HashSet<>(a.difference(of(2, 4, 6))));
+		assertEquals(set(1, 2, 3), new HashSet<>(a.difference(set(4, 5)))); // not a NodeSet
+		assertTrue(a.difference(a).isEmpty());
+		assertSame(a, a.difference(of(7, 8)));
+		assertSame(a, a.difference(set(9))); // never assigned an id
+		assertEquals(set(1, 2, 3, 4, 5), new HashSet<>(a)); // unchanged
+	}
+	
+	@Test
+	public void testEquals() {
+		assertEquals(of(1, 2, 3), of(3, 2, 1));
+		assertEquals(of(1, 2, 3), set(1, 2, 3));
+		assertNotEquals(of(1, 2), of(1, 2, 3));
+	}
+	
+	@Test
+	public void testReleasedIdsAreNotReused() {
+		NodeSet ns = of(1, 2);
+		int id = index.getId(nodes.get(1));
+		index.release(List.of(nodes.get(1)));
+		
+		assertEquals(-1, index.getId(nodes.get(1)));
+		assertFalse(ns.contains(nodes.get(1)));
+		assertTrue(ns.contains(nodes.get(2)));
+		
+		int newId = index.getOrAssign(nodes.get(3));
+		assertNotEquals(id, newId);
+		assertNotEquals(id, index.getOrAssign(nodes.get(1)));
+	}
+	
+}
@@ -0,0 +1,96 @@
+package org.baderlab.autoannotate.internal.ui.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.baderlab.autoannotate.internal.ui.view.display.Significance;
+import org.cytoscape.model.CyNetwork;
+import org.cytoscape.model.CyNode;
+import org.cytoscape.model.NetworkTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSignificanceIndex {
+	
+	private static final String COLUMN = "pvalue";
+	
+	private CyNetwork network;
+	private CyNode n1, n2, n3, n4, n5;
+	
+	
+	@Before
+	public void setup() {
+		network = new NetworkTestSupport().getNetwork();
+		network.getDefaultNodeTable().createColumn(COLUMN, Double.class, false);
+		n1 = addNode(0.5);
+		n2 = addNode(0.01);
+		n3 = addNode(-0.9);
+		n4 = addNode(0.01); // ties with n2
+		n5 = addNode(null); // unranked
+	}
+	
+	private CyNode addNode(Double value) {
+		CyNode node = network.addNode();
+		network.getRow(node).set(COLUMN, value);
+		return node;
+	}
+	
+	
+	@Test
+	public void testMinimum() {
+		var index = SignificanceIndex.fromColumn(network, COLUMN, Significance.MINIMUM);
+		assertEquals(List.of(n3, n2, n4, n1), index.sort(List.of(n1, n2, n3, n4, n5), false));
+		assertEquals(List.of(n3, n4, n2, n1, n5), index.sort(List.of(n5, n1, n4, n2, n3), true));
+		assertSame(n3, index.getMostSignificant(List.of(n1, n2, n3, n4, n5), false));
+	}
+	
+	@Test
+	public void testMaximumAndMagnitude() {
+		var max = SignificanceIndex.fromColumn(network, COLUMN, Significance.MAXIMUM);
+		assertEquals(List.of(n1, n2, n4, n3), max.sort(List.of(n1, n2, n3, n4, n5), false));
+		
+		var magnitude = SignificanceIndex.fromColumn(network, COLUMN, Significance.GREATEST_MAGNITUDE);
+		assertEquals(List.of(n3, n1, n2, n4), magnitude.sort(List.of(n1, n2, n3, n4, n5), false));
+	}
+	
+	@Test
+	public void testTiesKeepIterationOrder() {
+		var index = SignificanceIndex.fromColumn(network, COLUMN, Significance.MINIMUM);
+		assertEquals(List.of(n2, n4), index.sort(List.of(n2, n4), false));
+		assertEquals(List.of(n4, n2), index.sort(List.of(n4, n2), false));
+		assertSame(n2, index.getMostSignificant(List.of(n2, n4, n1), false));
+		assertSame(n4, index.getMostSignificant(List.of(n1, n4, n2), false));
+	}
+	
+	@Test
+	public void testUnranked() {
+		var index = SignificanceIndex.fromColumn(network, COLUMN, Significance.MINIMUM);
+		assertNull(index.getMostSignificant(List.of(n5), false));
+		assertSame(n5, index.getMostSignificant(List.of(n5), true));
+		assertSame(n1, index.getMostSignificant(List.of(n5, n1), true));
+		assertEquals(List.of(), index.sort(List.of(n5), false));
+		assertEquals(List.of(n5), index.sort(List.of(n5), true));
+	}
+	
+	@Test
+	public void testMissingOrNonNumericColumn() {
+		network.getDefaultNodeTable().createColumn("name2", String.class, false);
+		assertNull(SignificanceIndex.fromColumn(network, "missing", Significance.MINIMUM));
+		assertNull(SignificanceIndex.fromColumn(network, "name2", Significance.MINIMUM));
+	}
+	
+	@Test
+	public void testFromSortedNodes() {
+		CyNode a = mock(CyNode.class), b = mock(CyNode.class), c = mock(CyNode.class), d = mock(CyNode.class);
+		var index = SignificanceIndex.fromSortedNodes(List.of(b, c, a, b)); // duplicates keep their first rank
+		assertEquals(List.of(b, c, a), index.sort(List.of(a, b, c, d), false));
+		assertEquals(List.of(b, c, a, d), index.sort(List.of(d, a, b, c), true));
+		assertSame(b, index.getMostSignificant(List.of(a, b, c), false));
+		assertNull(index.getMostSignificant(List.of(d), false));
+	}
+	
+}